@@ -0,0 +1,69 @@
+package com.chizi.annotation;
+
+/**
+ * Binds the views of any {@link DIActivity} through the generated registries installed here,
+ * without knowing its generated {@code DI<Activity>} class.
+ *
+ * <pre>
+ * Binder.install(new DIRegistry());
+ * ...
+ * Binder.bind(this);
+ * ...
+ * Binder.unbind(this);
+ * </pre>
+ *
+ * The registry class is generated into the module whose {@code diRegistry} processor option names
+ * it, and covers the activities of that module and of all its dependencies.
+ */
+public final class Binder {
+
+    /**
+     * Binds the activities known to a generated registry.
+     */
+    public interface Registry {
+
+        /**
+         * @return false if the target is not an activity of this registry
+         */
+        boolean bind(Object target);
+
+        /**
+         * @return false if the target is not an activity of this registry
+         */
+        boolean unbind(Object target);
+    }
+
+    private static volatile Registry[] sRegistries = new Registry[0];
+
+    private Binder() {
+    }
+
+    public static synchronized void install(Registry registry) {
+        Registry[] registries = new Registry[sRegistries.length + 1];
+        System.arraycopy(sRegistries, 0, registries, 0, sRegistries.length);
+        registries[sRegistries.length] = registry;
+        sRegistries = registries;
+    }
+
+    public static void bind(Object target) {
+        for (Registry registry : sRegistries) {
+            if (registry.bind(target)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No binder installed for " + target.getClass().getName());
+    }
+
+    /**
+     * Releases the views bound to the target, typically from {@code onDestroy}.
+     */
+    public static void unbind(Object target) {
+        for (Registry registry : sRegistries) {
+            if (registry.unbind(target)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No binder installed for " + target.getClass().getName());
+    }
+
+}
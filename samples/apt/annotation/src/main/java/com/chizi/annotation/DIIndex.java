@@ -0,0 +1,17 @@
+package com.chizi.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class generated for every {@link DIActivity} in the {@code com.chizi.di.index} package,
+ * naming the activity. The generated binder registry of a module finds the activities of its
+ * dependencies through these on the classpath.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface DIIndex {
+    String value();
+}
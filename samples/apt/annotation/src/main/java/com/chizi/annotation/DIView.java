@@ -9,4 +9,10 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface DIView {
     int value() default 0;
+
+    /**
+     * Binds a {@link LazyView} field that looks the view up on its first {@link LazyView#get()}
+     * instead of during {@code bindView}, for views of rarely shown parts of the screen.
+     */
+    boolean lazy() default false;
 }
@@ -0,0 +1,15 @@
+package com.chizi.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a {@code <Interface>$$Proxy} class at compile time, which the dynamic-proxy
+ * {@code GeneratedProxies} factory loads instead of spinning a proxy class at runtime.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface GenerateProxy {
+}
@@ -0,0 +1,25 @@
+package com.chizi.annotation;
+
+/**
+ * Called around every method of a {@link GenerateProxy} proxy, or of one the dynamic-proxy
+ * {@code GeneratedProxies} factory spins at runtime. Methods are identified by their index in
+ * {@code GeneratedProxies.getProxyMethods}, so no {@link java.lang.reflect.Method} and no argument
+ * array is needed per call.
+ */
+public interface InvocationListener {
+
+    /**
+     * Called before the target method runs.
+     *
+     * @return a token handed back to {@link #onExit}, e.g. a {@link System#nanoTime()} start time
+     */
+    long onEnter(int methodIndex);
+
+    /**
+     * Called after the target method returned or threw.
+     *
+     * @param error what the target threw, or null if it returned normally
+     */
+    void onExit(int methodIndex, long token, Throwable error);
+
+}
@@ -0,0 +1,19 @@
+package com.chizi.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a streaming Gson {@code TypeAdapter} named {@code <Model>JsonAdapter} for the class,
+ * reading and writing its fields the way Gson's reflective adapter would, {@code @SerializedName}
+ * included, but through direct field access or the bean accessors of private fields. The adapters
+ * of a module are registered through the {@code TypeAdapterFactory} generated into the class named
+ * by the {@code jsonAdapterFactory} processor option. An adapter constructed with a projection
+ * only reads the JSON names in it and skips the other values.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface JsonModel {
+}
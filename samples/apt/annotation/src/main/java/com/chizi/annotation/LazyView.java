@@ -0,0 +1,46 @@
+package com.chizi.annotation;
+
+/**
+ * A view bound with {@link DIView#lazy()}. Looks the view up on the first {@link #get()} and returns
+ * the cached view from then on, without allocating. {@link #reset()}, called by the generated
+ * {@code unbindView}, drops both the view and the hierarchy, after which {@link #get()} returns
+ * null. Main thread only, like the views themselves.
+ */
+public final class LazyView<T> {
+
+    /**
+     * Looks views up in the hierarchy of a bound activity.
+     */
+    public interface Finder {
+        Object findViewById(int id);
+    }
+
+    private final int mId;
+    private Finder mFinder;
+    private T mView;
+
+    public LazyView(Finder finder, int id) {
+        mFinder = finder;
+        mId = id;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get() {
+        T view = mView;
+        if (view == null && mFinder != null) {
+            view = (T) mFinder.findViewById(mId);
+            mView = view;
+        }
+        return view;
+    }
+
+    public boolean isResolved() {
+        return mView != null;
+    }
+
+    public void reset() {
+        mFinder = null;
+        mView = null;
+    }
+
+}
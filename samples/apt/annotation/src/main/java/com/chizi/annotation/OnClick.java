@@ -0,0 +1,18 @@
+package com.chizi.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Calls the method when one of the views is clicked. The method returns void and takes
+ * either no argument or the clicked view.
+ * Bound by the {@code bindView} of the enclosing {@link DIActivity}, through a single dispatcher
+ * per activity switching on the view id.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.CLASS)
+public @interface OnClick {
+    int[] value();
+}
@@ -0,0 +1,99 @@
+package com.example.chizi.apt;
+
+import android.app.Activity;
+import android.widget.TextView;
+
+import com.chizi.annotation.DIActivity;
+import com.chizi.annotation.DIView;
+
+/**
+ * A screen with {@link #VIEW_COUNT} bound views for {@link BindViewBenchmark}. Never started, the
+ * benchmark binds it against a hierarchy it builds itself.
+ */
+@DIActivity
+public class BindBenchmarkActivity extends Activity {
+
+    static final int ID_BASE = 0x7e000001;
+    static final int VIEW_COUNT = 40;
+
+    @DIView(ID_BASE + 0)
+    TextView mView0;
+    @DIView(ID_BASE + 1)
+    TextView mView1;
+    @DIView(ID_BASE + 2)
+    TextView mView2;
+    @DIView(ID_BASE + 3)
+    TextView mView3;
+    @DIView(ID_BASE + 4)
+    TextView mView4;
+    @DIView(ID_BASE + 5)
+    TextView mView5;
+    @DIView(ID_BASE + 6)
+    TextView mView6;
+    @DIView(ID_BASE + 7)
+    TextView mView7;
+    @DIView(ID_BASE + 8)
+    TextView mView8;
+    @DIView(ID_BASE + 9)
+    TextView mView9;
+    @DIView(ID_BASE + 10)
+    TextView mView10;
+    @DIView(ID_BASE + 11)
+    TextView mView11;
+    @DIView(ID_BASE + 12)
+    TextView mView12;
+    @DIView(ID_BASE + 13)
+    TextView mView13;
+    @DIView(ID_BASE + 14)
+    TextView mView14;
+    @DIView(ID_BASE + 15)
+    TextView mView15;
+    @DIView(ID_BASE + 16)
+    TextView mView16;
+    @DIView(ID_BASE + 17)
+    TextView mView17;
+    @DIView(ID_BASE + 18)
+    TextView mView18;
+    @DIView(ID_BASE + 19)
+    TextView mView19;
+    @DIView(ID_BASE + 20)
+    TextView mView20;
+    @DIView(ID_BASE + 21)
+    TextView mView21;
+    @DIView(ID_BASE + 22)
+    TextView mView22;
+    @DIView(ID_BASE + 23)
+    TextView mView23;
+    @DIView(ID_BASE + 24)
+    TextView mView24;
+    @DIView(ID_BASE + 25)
+    TextView mView25;
+    @DIView(ID_BASE + 26)
+    TextView mView26;
+    @DIView(ID_BASE + 27)
+    TextView mView27;
+    @DIView(ID_BASE + 28)
+    TextView mView28;
+    @DIView(ID_BASE + 29)
+    TextView mView29;
+    @DIView(ID_BASE + 30)
+    TextView mView30;
+    @DIView(ID_BASE + 31)
+    TextView mView31;
+    @DIView(ID_BASE + 32)
+    TextView mView32;
+    @DIView(ID_BASE + 33)
+    TextView mView33;
+    @DIView(ID_BASE + 34)
+    TextView mView34;
+    @DIView(ID_BASE + 35)
+    TextView mView35;
+    @DIView(ID_BASE + 36)
+    TextView mView36;
+    @DIView(ID_BASE + 37)
+    TextView mView37;
+    @DIView(ID_BASE + 38)
+    TextView mView38;
+    @DIView(ID_BASE + 39)
+    TextView mView39;
+}
@@ -0,0 +1,148 @@
+package com.example.chizi.apt;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares the generated binders, which resolve all views in one walk of the hierarchy, with one
+ * {@code findViewById} walk per bound field as the binders did before. Results are logged under
+ * the {@value #TAG} tag.
+ *
+ * <pre>
+ * $ ./gradlew :app:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.example.chizi.apt.BindViewBenchmark
+ * $ adb logcat -s BindViewBenchmark
+ * </pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class BindViewBenchmark {
+
+    private static final String TAG = "BindViewBenchmark";
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 20000;
+
+    /**
+     * Unbound views around every bound one, as in a typical screen of rows and decorations.
+     */
+    private static final int FILLER_PER_VIEW = 3;
+
+    @Test
+    public void bindFortyViews() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final ViewGroup root = buildHierarchy(InstrumentationRegistry.getTargetContext());
+                final BindBenchmarkActivity activity = new BindBenchmarkActivity();
+                final int[] ids = ids(BindBenchmarkActivity.VIEW_COUNT, 1);
+                final View[] views = new View[ids.length];
+
+                DIBindBenchmarkActivity.bindView(activity, root);
+                assertSame(root.findViewById(ids[ids.length - 1]), activity.mView39);
+
+                report("40 views", measure(new Runnable() {
+                    @Override
+                    public void run() {
+                        DIBindBenchmarkActivity.bindView(activity, root);
+                    }
+                }), measure(new Runnable() {
+                    @Override
+                    public void run() {
+                        findEach(root, ids, views);
+                    }
+                }));
+            }
+        });
+    }
+
+    @Test
+    public void bindViewsAtThreshold() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final ViewGroup root = buildHierarchy(InstrumentationRegistry.getTargetContext());
+                final SmallBindBenchmarkActivity activity = new SmallBindBenchmarkActivity();
+                final int[] ids = ids(SmallBindBenchmarkActivity.VIEW_COUNT, 13);
+                final View[] views = new View[ids.length];
+
+                DISmallBindBenchmarkActivity.bindView(activity, root);
+                assertSame(root.findViewById(ids[ids.length - 1]), activity.mView3);
+
+                report("4 views", measure(new Runnable() {
+                    @Override
+                    public void run() {
+                        DISmallBindBenchmarkActivity.bindView(activity, root);
+                    }
+                }), measure(new Runnable() {
+                    @Override
+                    public void run() {
+                        findEach(root, ids, views);
+                    }
+                }));
+            }
+        });
+    }
+
+    private static void findEach(View root, int[] ids, View[] views) {
+        for (int i = 0; i < ids.length; i++) {
+            views[i] = root.findViewById(ids[i]);
+        }
+    }
+
+    private static int[] ids(int count, int step) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = BindBenchmarkActivity.ID_BASE + i * step;
+        }
+        return ids;
+    }
+
+    /**
+     * A decor-like frame holding rows of {@link #FILLER_PER_VIEW} unbound views and one bound
+     * {@link TextView} each, nested a few levels deep.
+     */
+    private static ViewGroup buildHierarchy(Context context) {
+        FrameLayout decor = new FrameLayout(context);
+        LinearLayout content = new LinearLayout(context);
+        decor.addView(content);
+        for (int i = 0; i < BindBenchmarkActivity.VIEW_COUNT; i++) {
+            LinearLayout row = new LinearLayout(context);
+            for (int j = 0; j < FILLER_PER_VIEW; j++) {
+                row.addView(new View(context));
+            }
+            TextView view = new TextView(context);
+            view.setId(BindBenchmarkActivity.ID_BASE + i);
+            row.addView(view);
+            content.addView(row);
+        }
+        return decor;
+    }
+
+    private static long measure(Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++) {
+            runnable.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static void report(String name, long singleWalkNanos, long perFieldNanos) {
+        Log.i(TAG, String.format("%s: single walk %d ns, findViewById per field %d ns",
+                name, singleWalkNanos, perFieldNanos));
+    }
+
+}
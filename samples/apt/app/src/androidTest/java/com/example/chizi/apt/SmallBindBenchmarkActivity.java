@@ -0,0 +1,26 @@
+package com.example.chizi.apt;
+
+import android.app.Activity;
+import android.widget.TextView;
+
+import com.chizi.annotation.DIActivity;
+import com.chizi.annotation.DIView;
+
+/**
+ * A screen with as many bound views as the single walk threshold of the DI processor, for
+ * {@link BindViewBenchmark}.
+ */
+@DIActivity
+public class SmallBindBenchmarkActivity extends Activity {
+
+    static final int VIEW_COUNT = 4;
+
+    @DIView(BindBenchmarkActivity.ID_BASE)
+    TextView mView0;
+    @DIView(BindBenchmarkActivity.ID_BASE + 13)
+    TextView mView1;
+    @DIView(BindBenchmarkActivity.ID_BASE + 26)
+    TextView mView2;
+    @DIView(BindBenchmarkActivity.ID_BASE + 39)
+    TextView mView3;
+}
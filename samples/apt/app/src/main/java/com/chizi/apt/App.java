@@ -0,0 +1,15 @@
+package com.chizi.apt;
+
+import android.app.Application;
+
+import com.chizi.annotation.Binder;
+
+public class App extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Generated from the diRegistry processor option, covers every @DIActivity of the app.
+        Binder.install(new DIRegistry());
+    }
+}
@@ -4,6 +4,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.widget.TextView;
 
+import com.chizi.annotation.Binder;
 import com.chizi.annotation.DIActivity;
 import com.chizi.annotation.DIView;
 
@@ -18,7 +19,13 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        DIMainActivity.bindView(this);
+        Binder.bind(this);
         mTextView.setText("Hello apt");
     }
+
+    @Override
+    protected void onDestroy() {
+        Binder.unbind(this);
+        super.onDestroy();
+    }
 }
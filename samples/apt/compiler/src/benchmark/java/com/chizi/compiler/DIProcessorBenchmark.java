@@ -0,0 +1,200 @@
+package com.chizi.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compile-time benchmark of {@link DIProcessor}. Generates sources of {@code activities} activities
+ * with {@code fields} bound views each, runs the processor over them with {@code -proc:only} and
+ * reports the time spent inside the processor only. With one pass and one file per activity the
+ * time grows linearly with the number of activities and of bindings.
+ *
+ * <pre>
+ * $ ./gradlew :compiler:benchmarkProcessor
+ * </pre>
+ */
+public class DIProcessorBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 5;
+
+    private static final int[][] SIZES = {
+            {100, 24}, {200, 24}, {400, 24}, {800, 24},
+            {400, 12}, {400, 48}, {800, 48},
+    };
+
+    public static void main(String[] args) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("A JDK is required to run the processor benchmark");
+        }
+        File output = File.createTempFile("di-benchmark", "");
+        if (!output.delete() || !output.mkdirs()) {
+            throw new IOException("Unable to create " + output);
+        }
+        try {
+            // Warm the compiler and the processor up on the largest input before measuring anything.
+            List<JavaFileObject> warmup = generateSources(800, 48);
+            for (int i = 0; i < WARMUP; i++) {
+                compile(compiler, warmup, output);
+            }
+            System.out.println("activities  fields  bindings  processor ms  us/binding");
+            for (int[] size : SIZES) {
+                List<JavaFileObject> sources = generateSources(size[0], size[1]);
+                compile(compiler, sources, output);
+                long[] times = new long[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    times[i] = compile(compiler, sources, output);
+                }
+                Arrays.sort(times);
+                long median = times[RUNS / 2];
+                int bindings = size[0] * size[1];
+                System.out.println(String.format(Locale.US, "%10d  %6d  %8d  %12.1f  %10.2f",
+                        size[0], size[1], bindings, median / 1e6, median / 1e3 / bindings));
+            }
+        } finally {
+            delete(output);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Compiles the sources with only {@link DIProcessor} and returns the nanoseconds it spent.
+     */
+    private static long compile(JavaCompiler compiler, List<JavaFileObject> sources, File output)
+            throws IOException {
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(output));
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(output));
+            List<String> options = Arrays.asList("-proc:only", "-nowarn",
+                    "-classpath", System.getProperty("java.class.path"));
+            TimedProcessor processor = new TimedProcessor(new DIProcessor());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, sources);
+            task.setProcessors(Collections.singleton(processor));
+            if (!task.call()) {
+                throw new IllegalStateException("Benchmark sources failed to compile");
+            }
+            return processor.mNanos;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private static List<JavaFileObject> generateSources(int activities, int fields) {
+        List<JavaFileObject> sources = new ArrayList<>();
+        sources.add(source("android.app.Activity", "package android.app;\n"
+                + "public class Activity {\n"
+                + "    public android.view.View findViewById(int id) { return null; }\n"
+                + "}\n"));
+        sources.add(source("android.view.View", "package android.view;\n"
+                + "public class View {}\n"));
+        sources.add(source("android.widget.TextView", "package android.widget;\n"
+                + "public class TextView extends android.view.View {}\n"));
+        for (int i = 0; i < activities; i++) {
+            StringBuilder code = new StringBuilder()
+                    .append("package com.chizi.benchmark.screen").append(i % 10).append(";\n")
+                    .append("@com.chizi.annotation.DIActivity\n")
+                    .append("public class Screen").append(i).append("Activity extends android.app.Activity {\n");
+            for (int j = 0; j < fields; j++) {
+                code.append("    @com.chizi.annotation.DIView(").append(0x7f080000 + j).append(")\n")
+                        .append("    android.widget.TextView mView").append(j).append(";\n");
+            }
+            sources.add(source("com.chizi.benchmark.screen" + (i % 10) + ".Screen" + i + "Activity",
+                    code.append("}\n").toString()));
+        }
+        return sources;
+    }
+
+    private static JavaFileObject source(String name, final String code) {
+        URI uri = URI.create("string:///" + name.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    /**
+     * Delegates to a processor and accumulates the time spent in {@link #process}.
+     */
+    private static final class TimedProcessor implements Processor {
+
+        private final Processor mDelegate;
+        long mNanos;
+
+        TimedProcessor(Processor delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return mDelegate.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return mDelegate.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return mDelegate.getSupportedSourceVersion();
+        }
+
+        @Override
+        public void init(ProcessingEnvironment processingEnv) {
+            mDelegate.init(processingEnv);
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            long start = System.nanoTime();
+            try {
+                return mDelegate.process(annotations, roundEnv);
+            } finally {
+                mNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation,
+                                                             ExecutableElement member, String userText) {
+            return mDelegate.getCompletions(element, annotation, member, userText);
+        }
+    }
+
+}
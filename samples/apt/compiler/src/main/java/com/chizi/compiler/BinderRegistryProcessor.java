@@ -0,0 +1,180 @@
+package com.chizi.compiler;
+
+import com.chizi.annotation.Binder;
+import com.chizi.annotation.DIActivity;
+import com.chizi.annotation.DIIndex;
+import com.google.auto.service.AutoService;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the {@link Binder.Registry} named by the {@value #OPTION_REGISTRY} processor option,
+ * dispatching every {@link DIActivity} of the module and of its dependencies to its generated
+ * binder. Activities of the dependencies are found through the {@link DIIndex} markers the
+ * {@link DIProcessor} leaves in their class files. The registry switches over the class names of
+ * the target and its superclasses, so binding needs neither {@code Class.forName} nor reflection.
+ * Aggregating for Gradle incremental compilation, and a no-op without the option. It claims every
+ * annotation without consuming any, so it also runs in modules without activities of their own.
+ */
+@AutoService(Processor.class)
+public class BinderRegistryProcessor extends AbstractProcessor {
+
+    static final String OPTION_REGISTRY = "diRegistry";
+
+    private Elements mElementUtils;
+    private ProcessorProfiler mProfiler;
+    private String mRegistryName;
+    private boolean mWritten;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnvironment) {
+        super.init(processingEnvironment);
+        mElementUtils = processingEnvironment.getElementUtils();
+        mProfiler = new ProcessorProfiler(processingEnvironment, getClass());
+        mRegistryName = processingEnvironment.getOptions().get(OPTION_REGISTRY);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return new HashSet<>(Arrays.asList(OPTION_REGISTRY, ProcessorProfiler.OPTION));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
+        mProfiler.beginRound();
+        try {
+            if (mRegistryName != null && !roundEnvironment.processingOver()) {
+                processRound(roundEnvironment);
+            }
+        } finally {
+            mProfiler.endRound(roundEnvironment);
+        }
+        return false;
+    }
+
+    private void processRound(RoundEnvironment roundEnvironment) {
+        Set<TypeElement> elements = ElementFilter.typesIn(roundEnvironment.getElementsAnnotatedWith(DIActivity.class));
+        if (mWritten) {
+            for (TypeElement typeElement : elements) {
+                error(typeElement, "@DIActivity generated after the binder registry " + mRegistryName);
+            }
+            return;
+        }
+        // Keyed by binary name, which is what the registry matches Class.getName() against.
+        Map<String, TypeElement> activities = new TreeMap<>();
+        for (TypeElement typeElement : elements) {
+            activities.put(mElementUtils.getBinaryName(typeElement).toString(), typeElement);
+        }
+        PackageElement index = mElementUtils.getPackageElement(DIProcessor.INDEX_PACKAGE);
+        if (index != null) {
+            for (TypeElement marker : ElementFilter.typesIn(index.getEnclosedElements())) {
+                DIIndex diIndex = marker.getAnnotation(DIIndex.class);
+                TypeElement activity = diIndex == null ? null : mElementUtils.getTypeElement(diIndex.value());
+                if (activity == null) {
+                    warning(marker, "Skipping binder index " + marker + ", its activity is not on the classpath");
+                    continue;
+                }
+                activities.put(mElementUtils.getBinaryName(activity).toString(), activity);
+            }
+        }
+
+        int dot = mRegistryName.lastIndexOf('.');
+        String packageName = dot < 0 ? "" : mRegistryName.substring(0, dot);
+        TypeSpec.Builder registry = TypeSpec.classBuilder(mRegistryName.substring(dot + 1))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(Binder.Registry.class);
+        for (Iterator<TypeElement> iterator = activities.values().iterator(); iterator.hasNext(); ) {
+            TypeElement activity = iterator.next();
+            if (!activity.getModifiers().contains(Modifier.PUBLIC) && !getPackageName(activity).equals(packageName)) {
+                warning(activity, "Not accessible from the binder registry " + mRegistryName);
+                iterator.remove();
+            } else {
+                registry.addOriginatingElement(activity);
+            }
+        }
+        registry.addMethod(buildDispatch("bind", "bindView", activities))
+                .addMethod(buildDispatch("unbind", "unbindView", activities));
+
+        mWritten = true;
+        try {
+            mProfiler.writeTo(JavaFile.builder(packageName, registry.build()).build());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write binder registry " + mRegistryName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A registry method calling the binder method of the first activity among the class and
+     * superclasses of the target.
+     */
+    private MethodSpec buildDispatch(String name, String binderMethod, Map<String, TypeElement> activities) {
+        MethodSpec.Builder method = MethodSpec.methodBuilder(name)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(boolean.class)
+                .addParameter(Object.class, "target");
+        if (!activities.isEmpty()) {
+            method.beginControlFlow("for ($T<?> type = target.getClass(); type != null; type = type.getSuperclass())",
+                    Class.class)
+                    .beginControlFlow("switch (type.getName())");
+            for (Map.Entry<String, TypeElement> entry : activities.entrySet()) {
+                ClassName activityName = ClassName.get(entry.getValue());
+                method.addCode("case $S:\n", entry.getKey())
+                        .addStatement("$>$T.$N(($T) target)",
+                                ClassName.get(activityName.packageName(), "DI" + activityName.simpleName()),
+                                binderMethod, activityName)
+                        .addStatement("return true$<");
+            }
+            method.endControlFlow().endControlFlow();
+        }
+        return method.addStatement("return false").build();
+    }
+
+    private String getPackageName(TypeElement type) {
+        return mElementUtils.getPackageOf(type).getQualifiedName().toString();
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
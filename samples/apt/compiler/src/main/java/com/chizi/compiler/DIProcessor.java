@@ -1,17 +1,31 @@
 package com.chizi.compiler;
 
 import com.chizi.annotation.DIActivity;
+import com.chizi.annotation.DIIndex;
 import com.chizi.annotation.DIView;
+import com.chizi.annotation.LazyView;
+import com.chizi.annotation.OnClick;
+import com.chizi.annotation.OnLongClick;
+import com.chizi.annotation.OnTextChanged;
 import com.google.auto.service.AutoService;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -20,19 +34,68 @@ import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
 
+/**
+ * Generates a {@code DI<Activity>} class with static {@code bindView} methods for every
+ * {@link DIActivity}, binding its views from the decor view or from a given root, an
+ * {@code unbindView} method releasing them, and a {@link DIIndex} marker for the binder registry.
+ * Declared as an isolating processor for Gradle incremental compilation: each generated file
+ * depends only on its activity and that activity's superclasses, which is all the processor reads,
+ * and is tied to the activity through its originating element.
+ */
 @AutoService(Processor.class)
 public class DIProcessor extends AbstractProcessor {
 
+    /**
+     * Superclasses from these packages never declare {@link DIView} fields and are not walked.
+     */
+    private static final String[] FRAMEWORK_PACKAGES = {"java.", "javax.", "android.", "androidx."};
+
+    /**
+     * Number of distinct view ids from which a binder resolves all of its views in a single walk
+     * of the hierarchy instead of one {@code findViewById} walk per id.
+     */
+    static final int SINGLE_PASS_THRESHOLD = 4;
+
+    /**
+     * Package of the {@link DIIndex} markers of all modules.
+     */
+    static final String INDEX_PACKAGE = "com.chizi.di.index";
+
+    private static final int HASH_MULTIPLIER = 0x9e3779b9;
+
+    private static final ClassName VIEW = ClassName.get("android.view", "View");
+    private static final ClassName VIEW_GROUP = ClassName.get("android.view", "ViewGroup");
+    private static final ClassName LAZY_VIEW = ClassName.get(LazyView.class);
+    private static final ClassName LAZY_VIEW_FINDER = ClassName.get(LazyView.Finder.class);
+    private static final ClassName TEXT_VIEW = ClassName.get("android.widget", "TextView");
+    private static final String FINDER = "Finder";
+    private static final String DISPATCHER = "Dispatcher";
+    private static final String WATCHER = "Watcher";
+
     private Elements mElementUtils;
+    private Types mTypeUtils;
+    private ProcessorProfiler mProfiler;
+    private final Set<String> mProcessedTypes = new HashSet<>();
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnvironment) {
         super.init(processingEnvironment);
         mElementUtils = processingEnvironment.getElementUtils();
+        mTypeUtils = processingEnvironment.getTypeUtils();
+        mProfiler = new ProcessorProfiler(processingEnvironment, getClass());
     }
 
     @Override
@@ -45,45 +108,503 @@ public class DIProcessor extends AbstractProcessor {
         return Collections.singleton(DIActivity.class.getCanonicalName());
     }
 
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(ProcessorProfiler.OPTION);
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
-        System.out.println("DIProcessor");
+        mProfiler.beginRound();
+        try {
+            processRound(roundEnvironment);
+        } finally {
+            mProfiler.endRound(roundEnvironment);
+        }
+        return false;
+    }
+
+    private void processRound(RoundEnvironment roundEnvironment) {
+        // Only the root elements of this round are reported, so each activity is visited once.
         Set<? extends Element> elements = roundEnvironment.getElementsAnnotatedWith(DIActivity.class);
-        for (Element element : elements) {
-            TypeElement typeElement = ((TypeElement) element);
-            List<? extends Element> members = mElementUtils.getAllMembers(typeElement);
-            MethodSpec.Builder methodSpecBuilder = MethodSpec.methodBuilder("bindView")
-                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                    .returns(TypeName.VOID)
-                    .addParameter(ClassName.get(typeElement.asType()), "activity");
-            for (Element member : members) {
-                DIView diView = member.getAnnotation(DIView.class);
-                if (diView == null) {
-                    continue;
+        for (TypeElement typeElement : ElementFilter.typesIn(elements)) {
+            if (typeElement.getKind() != ElementKind.CLASS) {
+                error(typeElement, "@DIActivity only applies to classes");
+                continue;
+            }
+            if (!mProcessedTypes.add(typeElement.getQualifiedName().toString())) {
+                continue;
+            }
+            long start = mProfiler.start();
+            try {
+                mProfiler.writeTo(JavaFile.builder(getPackageName(typeElement), buildBinder(typeElement)).build());
+                mProfiler.writeTo(JavaFile.builder(INDEX_PACKAGE, buildIndex(typeElement)).build());
+            } catch (IOException e) {
+                error(typeElement, "Unable to write binder for " + typeElement + ": " + e.getMessage());
+            }
+            mProfiler.element(typeElement, start);
+        }
+    }
+
+    /**
+     * Builds the whole binder of the activity from its bound fields in one pass. Below
+     * {@link #SINGLE_PASS_THRESHOLD} distinct ids every view is looked up with
+     * {@code findViewById}; from there on the binder walks the hierarchy once and matches every
+     * view id against a table of the requested ids built here at compile time. Lazy fields get a
+     * {@link LazyView} sharing one finder over the root, and {@code unbindView} clears the fields
+     * and resets the lazy views. Listener methods are all called from one dispatcher.
+     */
+    private TypeSpec buildBinder(TypeElement typeElement) {
+        ClassName activityName = ClassName.get(typeElement);
+        ClassName binderName = ClassName.get(activityName.packageName(), "DI" + typeElement.getSimpleName());
+        TypeSpec.Builder binder = TypeSpec.classBuilder(binderName)
+                .addOriginatingElement(typeElement)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+                .addMethod(MethodSpec.methodBuilder("bindView")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .addParameter(activityName, "activity")
+                        .addStatement("bindView(activity, activity.getWindow().getDecorView())")
+                        .build());
+        MethodSpec.Builder bindView = MethodSpec.methodBuilder("bindView")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(activityName, "activity")
+                .addParameter(VIEW, "root");
+
+        MethodSpec.Builder unbindView = MethodSpec.methodBuilder("unbindView")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(activityName, "activity");
+
+        List<VariableElement> fields = new ArrayList<>();
+        List<VariableElement> lazyFields = new ArrayList<>();
+        for (VariableElement field : getBoundFields(typeElement)) {
+            DIView diView = field.getAnnotation(DIView.class);
+            if (diView.value() == 0) {
+                error(field, "@DIView requires a view id");
+            } else if (diView.lazy() != isLazyView(field)) {
+                error(field, "@DIView(lazy = true) applies to LazyView fields, and only to them");
+            } else {
+                (diView.lazy() ? lazyFields : fields).add(field);
+            }
+        }
+        Map<Integer, ExecutableElement> clicks = new LinkedHashMap<>();
+        Map<Integer, ExecutableElement> longClicks = new LinkedHashMap<>();
+        Map<Integer, ExecutableElement> textChanges = new LinkedHashMap<>();
+        for (ExecutableElement method : getListenerMethods(typeElement)) {
+            OnClick onClick = method.getAnnotation(OnClick.class);
+            OnLongClick onLongClick = method.getAnnotation(OnLongClick.class);
+            OnTextChanged onTextChanged = method.getAnnotation(OnTextChanged.class);
+            if (onClick != null) {
+                addListener(clicks, onClick.value(), method, "@OnClick");
+            }
+            if (onLongClick != null) {
+                addListener(longClicks, onLongClick.value(), method, "@OnLongClick");
+            }
+            if (onTextChanged != null) {
+                addListener(textChanges, onTextChanged.value(), method, "@OnTextChanged");
+            }
+        }
+
+        // Distinct ids in declaration order, fields sharing an id share the view.
+        Map<Integer, Integer> indices = new LinkedHashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (VariableElement field : fields) {
+            ids.add(field.getAnnotation(DIView.class).value());
+        }
+        ids.addAll(clicks.keySet());
+        ids.addAll(longClicks.keySet());
+        ids.addAll(textChanges.keySet());
+        for (int id : ids) {
+            if (!indices.containsKey(id)) {
+                indices.put(id, indices.size());
+            }
+        }
+        boolean singlePass = indices.size() >= SINGLE_PASS_THRESHOLD;
+        if (singlePass) {
+            bindView.addStatement("$T[] views = new $T[$L]", VIEW, VIEW, indices.size())
+                    .addStatement("find(root, views, $L)", indices.size());
+        }
+        for (VariableElement field : fields) {
+            int id = field.getAnnotation(DIView.class).value();
+            String name = field.getSimpleName().toString();
+            TypeName type = TypeName.get(mTypeUtils.erasure(field.asType()));
+            if (singlePass) {
+                bindView.addStatement("activity.$N = ($T) views[$L]", name, type, indices.get(id));
+            } else {
+                bindView.addStatement("activity.$N = ($T) root.findViewById($L)", name, type, hex(id));
+            }
+            unbindView.addStatement("activity.$N = null", name);
+        }
+        if (!clicks.isEmpty() || !longClicks.isEmpty() || !textChanges.isEmpty()) {
+            addDispatcher(binder, bindView, binderName.nestedClass(DISPATCHER), activityName,
+                    clicks, longClicks, textChanges);
+            for (int id : clicks.keySet()) {
+                bindView.addStatement("$L.setOnClickListener(dispatcher)", getView(id, singlePass, indices));
+            }
+            for (int id : longClicks.keySet()) {
+                bindView.addStatement("$L.setOnLongClickListener(dispatcher)", getView(id, singlePass, indices));
+            }
+            for (int id : textChanges.keySet()) {
+                bindView.addStatement("(($T) $L).addTextChangedListener(new $N(dispatcher, $L))",
+                        TEXT_VIEW, getView(id, singlePass, indices), WATCHER, hex(id));
+            }
+        }
+        if (!lazyFields.isEmpty()) {
+            // One finder shared by all lazy views of the activity, the only allocations are at bind.
+            bindView.addStatement("$T finder = new $N(root)", LAZY_VIEW_FINDER, FINDER);
+            for (VariableElement field : lazyFields) {
+                String name = field.getSimpleName().toString();
+                bindView.addStatement("activity.$N = new $T<>(finder, $L)",
+                        name, LAZY_VIEW, hex(field.getAnnotation(DIView.class).value()));
+                // Reset rather than cleared, so a LazyView still referenced elsewhere lets go as well.
+                unbindView.beginControlFlow("if (activity.$N != null)", name)
+                        .addStatement("activity.$N.reset()", name)
+                        .endControlFlow();
+            }
+            binder.addType(TypeSpec.classBuilder(FINDER)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addSuperinterface(LAZY_VIEW_FINDER)
+                    .addField(VIEW, "root", Modifier.PRIVATE, Modifier.FINAL)
+                    .addMethod(MethodSpec.constructorBuilder()
+                            .addParameter(VIEW, "root")
+                            .addStatement("this.root = root")
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("findViewById")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(Object.class)
+                            .addParameter(int.class, "id")
+                            .addStatement("return root.findViewById(id)")
+                            .build())
+                    .build());
+        }
+        binder.addMethod(bindView.build())
+                .addMethod(unbindView.build());
+        if (singlePass) {
+            addLookupTable(binder, indices);
+        }
+        return binder.build();
+    }
+
+    private CodeBlock getView(int id, boolean singlePass, Map<Integer, Integer> indices) {
+        return singlePass ? CodeBlock.of("views[$L]", indices.get(id)) : CodeBlock.of("root.findViewById($L)", hex(id));
+    }
+
+    private void addListener(Map<Integer, ExecutableElement> listeners, int[] ids, ExecutableElement method,
+                             String annotation) {
+        for (int id : ids) {
+            if (id == 0) {
+                error(method, annotation + " requires view ids");
+            } else if (listeners.containsKey(id)) {
+                error(method, annotation + " for view " + hex(id) + " already bound to "
+                        + listeners.get(id).getSimpleName());
+            } else {
+                listeners.put(id, method);
+            }
+        }
+    }
+
+    /**
+     * Adds the single listener of the activity, implementing each listener interface in use and
+     * switching on the view id to the annotated methods, plus a {@code TextWatcher} forwarding
+     * the text changes of one view to it, as text watchers are not told which view changed.
+     */
+    private void addDispatcher(TypeSpec.Builder binder, MethodSpec.Builder bindView, ClassName dispatcherName,
+                               ClassName activityName,
+                               Map<Integer, ExecutableElement> clicks, Map<Integer, ExecutableElement> longClicks,
+                               Map<Integer, ExecutableElement> textChanges) {
+        TypeMirror viewType = getType(VIEW);
+        TypeMirror charSequenceType = getType(ClassName.get(CharSequence.class));
+        TypeSpec.Builder dispatcher = TypeSpec.classBuilder(dispatcherName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(activityName, "activity", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addParameter(activityName, "activity")
+                        .addStatement("this.activity = activity")
+                        .build());
+        if (!clicks.isEmpty()) {
+            MethodSpec.Builder onClick = MethodSpec.methodBuilder("onClick")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(VIEW, "view")
+                    .beginControlFlow("switch (view.getId())");
+            for (Map.Entry<Integer, ExecutableElement> entry : clicks.entrySet()) {
+                ExecutableElement method = entry.getValue();
+                checkReturnType(method, TypeKind.VOID, "@OnClick");
+                onClick.addCode("case $L:\n$>", hex(entry.getKey()))
+                        .addStatement("activity.$N($L)", method.getSimpleName().toString(),
+                                getArgument(method, viewType, "view", true))
+                        .addStatement("break$<");
+            }
+            dispatcher.addSuperinterface(VIEW.nestedClass("OnClickListener"))
+                    .addMethod(onClick.endControlFlow().build());
+        }
+        if (!longClicks.isEmpty()) {
+            MethodSpec.Builder onLongClick = MethodSpec.methodBuilder("onLongClick")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(boolean.class)
+                    .addParameter(VIEW, "view")
+                    .beginControlFlow("switch (view.getId())");
+            for (Map.Entry<Integer, ExecutableElement> entry : longClicks.entrySet()) {
+                ExecutableElement method = entry.getValue();
+                checkReturnType(method, TypeKind.BOOLEAN, "@OnLongClick");
+                onLongClick.addCode("case $L:\n$>", hex(entry.getKey()))
+                        .addStatement("return activity.$N($L)$<", method.getSimpleName().toString(),
+                                getArgument(method, viewType, "view", true));
+            }
+            dispatcher.addSuperinterface(VIEW.nestedClass("OnLongClickListener"))
+                    .addMethod(onLongClick.addCode("default:\n$>")
+                            .addStatement("return false$<")
+                            .endControlFlow()
+                            .build());
+        }
+        if (!textChanges.isEmpty()) {
+            MethodSpec.Builder onTextChanged = MethodSpec.methodBuilder("onTextChanged")
+                    .addParameter(int.class, "id")
+                    .addParameter(CharSequence.class, "text")
+                    .beginControlFlow("switch (id)");
+            for (Map.Entry<Integer, ExecutableElement> entry : textChanges.entrySet()) {
+                ExecutableElement method = entry.getValue();
+                checkReturnType(method, TypeKind.VOID, "@OnTextChanged");
+                onTextChanged.addCode("case $L:\n$>", hex(entry.getKey()))
+                        .addStatement("activity.$N($L)", method.getSimpleName().toString(),
+                                getArgument(method, charSequenceType, "text", false))
+                        .addStatement("break$<");
+            }
+            dispatcher.addMethod(onTextChanged.endControlFlow().build());
+            binder.addType(TypeSpec.classBuilder(WATCHER)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addSuperinterface(ClassName.get("android.text", "TextWatcher"))
+                    .addField(dispatcherName, "dispatcher", Modifier.PRIVATE, Modifier.FINAL)
+                    .addField(int.class, "id", Modifier.PRIVATE, Modifier.FINAL)
+                    .addMethod(MethodSpec.constructorBuilder()
+                            .addParameter(dispatcherName, "dispatcher")
+                            .addParameter(int.class, "id")
+                            .addStatement("this.dispatcher = dispatcher")
+                            .addStatement("this.id = id")
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("beforeTextChanged")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .addParameter(CharSequence.class, "text")
+                            .addParameter(int.class, "start")
+                            .addParameter(int.class, "count")
+                            .addParameter(int.class, "after")
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("onTextChanged")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .addParameter(CharSequence.class, "text")
+                            .addParameter(int.class, "start")
+                            .addParameter(int.class, "before")
+                            .addParameter(int.class, "count")
+                            .addStatement("dispatcher.onTextChanged(id, text)")
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("afterTextChanged")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .addParameter(ClassName.get("android.text", "Editable"), "text")
+                            .build())
+                    .build());
+        }
+        binder.addType(dispatcher.build());
+        bindView.addStatement("$T dispatcher = new $T(activity)", dispatcherName, dispatcherName);
+    }
+
+    private void checkReturnType(ExecutableElement method, TypeKind kind, String annotation) {
+        if (method.getReturnType().getKind() != kind) {
+            error(method, annotation + " methods must return " + kind.name().toLowerCase(Locale.US));
+        }
+    }
+
+    /**
+     * The argument list passing the listener argument to the method, cast down when allowed.
+     */
+    private CodeBlock getArgument(ExecutableElement method, TypeMirror type, String argument, boolean allowCast) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (parameters.isEmpty()) {
+            return CodeBlock.of("");
+        }
+        if (parameters.size() == 1 && type != null) {
+            TypeMirror parameter = parameters.get(0).asType();
+            if (mTypeUtils.isAssignable(type, parameter)) {
+                return CodeBlock.of("$N", argument);
+            }
+            if (allowCast && mTypeUtils.isSubtype(parameter, type)) {
+                return CodeBlock.of("($T) $N", TypeName.get(mTypeUtils.erasure(parameter)), argument);
+            }
+        }
+        error(method, "Unsupported parameters, expected none or one " + type);
+        return CodeBlock.of("");
+    }
+
+    private TypeMirror getType(ClassName name) {
+        TypeElement element = mElementUtils.getTypeElement(name.toString());
+        return element == null ? null : element.asType();
+    }
+
+    private boolean isLazyView(VariableElement field) {
+        TypeElement lazyView = mElementUtils.getTypeElement(LazyView.class.getCanonicalName());
+        return mTypeUtils.isSameType(mTypeUtils.erasure(field.asType()), mTypeUtils.erasure(lazyView.asType()));
+    }
+
+    /**
+     * The marker through which the {@link BinderRegistryProcessor} of dependent modules finds the
+     * activity on the classpath.
+     */
+    private TypeSpec buildIndex(TypeElement typeElement) {
+        String binaryName = mElementUtils.getBinaryName(typeElement).toString();
+        return TypeSpec.classBuilder(binaryName.replace('.', '_'))
+                .addOriginatingElement(typeElement)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addAnnotation(AnnotationSpec.builder(DIIndex.class)
+                        .addMember("value", "$S", typeElement.getQualifiedName().toString())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Adds an open addressing table of the ids, keyed by Fibonacci hashing with linear probing,
+     * and the depth first walk filling {@code views} in the order of {@code indices}. The walk
+     * visits views in the same order as {@code findViewById}, so the first match of an id wins
+     * here as well, and stops as soon as every id is found.
+     */
+    private void addLookupTable(TypeSpec.Builder binder, Map<Integer, Integer> indices) {
+        int bits = 32 - Integer.numberOfLeadingZeros(indices.size() * 2 - 1);
+        int[] keys = new int[1 << bits];
+        int[] values = new int[1 << bits];
+        for (Map.Entry<Integer, Integer> entry : indices.entrySet()) {
+            int slot = (entry.getKey() * HASH_MULTIPLIER) >>> (32 - bits);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = entry.getKey();
+            values[slot] = entry.getValue();
+        }
+        CodeBlock.Builder keysInitializer = CodeBlock.builder().add("{");
+        CodeBlock.Builder valuesInitializer = CodeBlock.builder().add("{");
+        for (int i = 0; i < keys.length; i++) {
+            keysInitializer.add(i == 0 ? "$L" : ",$W$L", hex(keys[i]));
+            valuesInitializer.add(i == 0 ? "$L" : ",$W$L", values[i]);
+        }
+        binder.addField(FieldSpec.builder(int[].class, "KEYS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(keysInitializer.add("}").build())
+                .build())
+                .addField(FieldSpec.builder(int[].class, "VALUES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer(valuesInitializer.add("}").build())
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("find")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(int.class)
+                        .addParameter(VIEW, "view")
+                        .addParameter(ArrayTypeName.of(VIEW), "views")
+                        .addParameter(int.class, "remaining")
+                        .addStatement("int index = indexOf(view.getId())")
+                        .beginControlFlow("if (index >= 0 && views[index] == null)")
+                        .addStatement("views[index] = view")
+                        .beginControlFlow("if (--remaining == 0)")
+                        .addStatement("return 0")
+                        .endControlFlow()
+                        .endControlFlow()
+                        .beginControlFlow("if (view instanceof $T)", VIEW_GROUP)
+                        .addStatement("$T group = ($T) view", VIEW_GROUP, VIEW_GROUP)
+                        .beginControlFlow("for (int i = 0, count = group.getChildCount(); i < count && remaining > 0; i++)")
+                        .addStatement("remaining = find(group.getChildAt(i), views, remaining)")
+                        .endControlFlow()
+                        .endControlFlow()
+                        .addStatement("return remaining")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("indexOf")
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                        .returns(int.class)
+                        .addParameter(int.class, "id")
+                        .addStatement("int slot = (id * $L) >>> $L", hex(HASH_MULTIPLIER), 32 - bits)
+                        .addStatement("int key")
+                        .beginControlFlow("while ((key = KEYS[slot]) != 0)")
+                        .beginControlFlow("if (key == id)")
+                        .addStatement("return VALUES[slot]")
+                        .endControlFlow()
+                        .addStatement("slot = (slot + 1) & $L", keys.length - 1)
+                        .endControlFlow()
+                        .addStatement("return -1")
+                        .build());
+    }
+
+    /**
+     * The {@link DIView} fields declared by the type and its application superclasses. Only the
+     * declared fields are read instead of {@link Elements#getAllMembers}, which would also pull in
+     * every method and field of the framework hierarchy.
+     */
+    private List<VariableElement> getBoundFields(TypeElement typeElement) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (TypeElement type = typeElement; type != null; type = getSuperclass(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (field.getAnnotation(DIView.class) != null && isAccessible(field, type, typeElement, "@DIView")) {
+                    fields.add(field);
                 }
-                methodSpecBuilder.addStatement(String.format("activity.%s = (%s) activity.findViewById(%s)",
-                        member.getSimpleName(),
-                        ClassName.get(member.asType()).toString(),
-                        diView.value()));
-                TypeSpec typeSpec = TypeSpec.classBuilder("DI" + element.getSimpleName())
-                        .superclass(TypeName.get(typeElement.asType()))
-                        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                        .addMethod(methodSpecBuilder.build())
-                        .build();
-
-                JavaFile javaFile = JavaFile.builder(getPackageName(typeElement), typeSpec).build();
-                try {
-                    javaFile.writeTo(processingEnv.getFiler());
-                } catch (IOException e) {
-                    e.printStackTrace();
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * The listener methods declared by the type and its application superclasses, walked like
+     * {@link #getBoundFields}.
+     */
+    private List<ExecutableElement> getListenerMethods(TypeElement typeElement) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (TypeElement type = typeElement; type != null; type = getSuperclass(type)) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if ((method.getAnnotation(OnClick.class) != null || method.getAnnotation(OnLongClick.class) != null
+                        || method.getAnnotation(OnTextChanged.class) != null)
+                        && isAccessible(method, type, typeElement, "Listener")) {
+                    methods.add(method);
                 }
             }
         }
-        return false;
+        return methods;
+    }
+
+    private boolean isAccessible(Element member, TypeElement owner, TypeElement typeElement, String kind) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+            error(member, kind + " members must not be private or static");
+            return false;
+        }
+        if (owner != typeElement && !modifiers.contains(Modifier.PUBLIC)
+                && !getPackageName(owner).equals(getPackageName(typeElement))) {
+            error(member, kind + " member is not accessible from " + typeElement.getQualifiedName());
+            return false;
+        }
+        return true;
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        String name = element.getQualifiedName().toString();
+        for (String prefix : FRAMEWORK_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return null;
+            }
+        }
+        return element;
     }
 
     private String getPackageName(TypeElement type) {
         return mElementUtils.getPackageOf(type).getQualifiedName().toString();
     }
 
+    private static String hex(int value) {
+        return String.format("0x%08x", value);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
 }
@@ -0,0 +1,516 @@
+package com.chizi.compiler;
+
+import com.chizi.annotation.JsonModel;
+import com.google.auto.service.AutoService;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a streaming Gson {@code TypeAdapter} for every {@link JsonModel} class, and the
+ * {@code TypeAdapterFactory} named by the {@value #OPTION_FACTORY} processor option returning them.
+ * Strings, primitives and their boxes are read and written in place; fields of any other type go
+ * through the adapter Gson has for it. Aggregating for Gradle incremental compilation, because of
+ * the factory.
+ */
+@AutoService(Processor.class)
+public class JsonAdapterProcessor extends AbstractProcessor {
+
+    static final String OPTION_FACTORY = "jsonAdapterFactory";
+
+    private static final String ADAPTER_SUFFIX = "JsonAdapter";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    private static final ClassName GSON = ClassName.get("com.google.gson", "Gson");
+    private static final ClassName TYPE_ADAPTER = ClassName.get("com.google.gson", "TypeAdapter");
+    private static final ClassName TYPE_ADAPTER_FACTORY = ClassName.get("com.google.gson", "TypeAdapterFactory");
+    private static final ClassName TYPE_TOKEN = ClassName.get("com.google.gson.reflect", "TypeToken");
+    private static final ClassName JSON_READER = ClassName.get("com.google.gson.stream", "JsonReader");
+    private static final ClassName JSON_WRITER = ClassName.get("com.google.gson.stream", "JsonWriter");
+    private static final ClassName JSON_TOKEN = ClassName.get("com.google.gson.stream", "JsonToken");
+    private static final TypeName STRING_SET = ParameterizedTypeName.get(Set.class, String.class);
+
+    private Elements mElementUtils;
+    private Types mTypeUtils;
+    private ProcessorProfiler mProfiler;
+    private String mFactoryName;
+    private boolean mFactoryWritten;
+    private final Set<String> mProcessedTypes = new HashSet<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnvironment) {
+        super.init(processingEnvironment);
+        mElementUtils = processingEnvironment.getElementUtils();
+        mTypeUtils = processingEnvironment.getTypeUtils();
+        mProfiler = new ProcessorProfiler(processingEnvironment, getClass());
+        mFactoryName = processingEnvironment.getOptions().get(OPTION_FACTORY);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(JsonModel.class.getCanonicalName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return new HashSet<>(Arrays.asList(OPTION_FACTORY, ProcessorProfiler.OPTION));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
+        mProfiler.beginRound();
+        try {
+            if (!roundEnvironment.processingOver()) {
+                processRound(roundEnvironment);
+            }
+        } finally {
+            mProfiler.endRound(roundEnvironment);
+        }
+        return false;
+    }
+
+    private void processRound(RoundEnvironment roundEnvironment) {
+        Map<String, TypeElement> models = new TreeMap<>();
+        for (TypeElement typeElement : ElementFilter.typesIn(roundEnvironment.getElementsAnnotatedWith(JsonModel.class))) {
+            if (!mProcessedTypes.add(typeElement.getQualifiedName().toString()) || !isValidModel(typeElement)) {
+                continue;
+            }
+            long start = mProfiler.start();
+            try {
+                mProfiler.writeTo(JavaFile.builder(getPackageName(typeElement), buildAdapter(typeElement)).build());
+            } catch (IOException e) {
+                error(typeElement, "Unable to write adapter for " + typeElement + ": " + e.getMessage());
+            }
+            mProfiler.element(typeElement, start);
+            models.put(mElementUtils.getBinaryName(typeElement).toString(), typeElement);
+        }
+        if (mFactoryName == null || models.isEmpty()) {
+            return;
+        }
+        if (mFactoryWritten) {
+            for (TypeElement model : models.values()) {
+                error(model, "@JsonModel generated after the adapter factory " + mFactoryName);
+            }
+            return;
+        }
+        mFactoryWritten = true;
+        int dot = mFactoryName.lastIndexOf('.');
+        String packageName = dot < 0 ? "" : mFactoryName.substring(0, dot);
+        try {
+            mProfiler.writeTo(JavaFile.builder(packageName, buildFactory(mFactoryName.substring(dot + 1), models))
+                    .build());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write adapter factory " + mFactoryName + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isValidModel(TypeElement typeElement) {
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        if (typeElement.getKind() != ElementKind.CLASS || modifiers.contains(Modifier.ABSTRACT)
+                || !typeElement.getTypeParameters().isEmpty()) {
+            error(typeElement, "@JsonModel only applies to concrete, non-generic classes");
+            return false;
+        }
+        if (modifiers.contains(Modifier.PRIVATE) || typeElement.getNestingKind() == NestingKind.MEMBER
+                && !modifiers.contains(Modifier.STATIC)) {
+            error(typeElement, "@JsonModel classes must not be private or inner classes");
+            return false;
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(typeElement.getEnclosedElements());
+        for (ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(typeElement, "@JsonModel classes need a non-private no-argument constructor");
+        return false;
+    }
+
+    private TypeSpec buildAdapter(TypeElement typeElement) {
+        ClassName modelName = ClassName.get(typeElement);
+        TypeSpec.Builder adapter = TypeSpec.classBuilder(getAdapterName(typeElement))
+                .addOriginatingElement(typeElement)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .superclass(ParameterizedTypeName.get(TYPE_ADAPTER, modelName))
+                .addField(GSON, "gson", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(STRING_SET, "projection", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(GSON, "gson")
+                        .addStatement("this(gson, null)")
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addJavadoc("Reads only the JSON names in {@code projection}, skipping the values of all "
+                                + "others\nwithout building them, or every field when null. Writing is not "
+                                + "affected.\n")
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(GSON, "gson")
+                        .addParameter(STRING_SET, "projection")
+                        .addStatement("this.gson = gson")
+                        .addStatement("this.projection = projection")
+                        .build());
+        MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(JSON_WRITER, "out")
+                .addParameter(modelName, "value")
+                .addException(IOException.class)
+                .beginControlFlow("if (value == null)")
+                .addStatement("out.nullValue()")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("out.beginObject()");
+        MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(modelName)
+                .addParameter(JSON_READER, "in")
+                .addException(IOException.class)
+                .beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+                .addStatement("in.nextNull()")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("$T value = new $T()", modelName, modelName)
+                .addStatement("in.beginObject()")
+                .beginControlFlow("while (in.hasNext())")
+                .addStatement("$T name = in.nextName()", String.class)
+                .beginControlFlow("if (projection != null && !projection.contains(name))")
+                .addStatement("in.skipValue()")
+                .addStatement("continue")
+                .endControlFlow()
+                .beginControlFlow("switch (name)");
+
+        Map<String, VariableElement> names = new HashMap<>();
+        for (VariableElement field : getFields(typeElement)) {
+            List<String> jsonNames = getJsonNames(field);
+            boolean duplicate = false;
+            for (String jsonName : jsonNames) {
+                VariableElement previous = names.put(jsonName, field);
+                if (previous != null) {
+                    error(field, typeElement + " declares multiple JSON fields named " + jsonName);
+                    duplicate = true;
+                }
+            }
+            CodeBlock getter = getGetter(typeElement, field);
+            String setter = getSetter(typeElement, field);
+            if (duplicate || getter == null || setter == null) {
+                continue;
+            }
+            TypeMirror type = field.asType();
+            CodeBlock reader = getReader(type);
+            if (reader == null) {
+                reader = CodeBlock.of("$N().read(in)", addDelegate(adapter, field));
+                write.addStatement("out.name($S)", jsonNames.get(0))
+                        .addStatement("$N().write(out, $L)", field.getSimpleName() + ADAPTER_SUFFIX, getter);
+            } else {
+                // A float widened to double would print its binary expansion, Gson prints the Float.
+                boolean isFloat = type.getKind() == TypeKind.FLOAT || isType(type, Float.class);
+                write.addStatement("out.name($S)", jsonNames.get(0))
+                        .addStatement(isFloat ? "out.value(($T) $L)" : "out.value($L)",
+                                isFloat ? new Object[]{Number.class, getter} : new Object[]{getter});
+            }
+            for (String jsonName : jsonNames) {
+                read.addCode("case $S:\n", jsonName);
+            }
+            read.addCode("$>");
+            CodeBlock assignment = setter.isEmpty()
+                    ? CodeBlock.of("value.$N = $L", field.getSimpleName().toString(), reader)
+                    : CodeBlock.of("value.$N($L)", setter, reader);
+            if (getReader(type) == null) {
+                read.addStatement("$L", assignment);
+            } else {
+                // Like Gson, a null leaves a primitive field alone and sets any other field to null.
+                read.beginControlFlow("if (in.peek() == $T.NULL)", JSON_TOKEN)
+                        .addStatement("in.nextNull()");
+                if (!type.getKind().isPrimitive()) {
+                    read.addStatement(setter.isEmpty() ? "value.$N = null" : "value.$N(null)",
+                            setter.isEmpty() ? field.getSimpleName().toString() : setter);
+                }
+                read.nextControlFlow("else")
+                        .addStatement("$L", assignment)
+                        .endControlFlow();
+            }
+            read.addStatement("break$<");
+        }
+
+        write.addStatement("out.endObject()");
+        read.addCode("default:\n$>")
+                .addStatement("in.skipValue()$<")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("in.endObject()")
+                .addStatement("return value");
+        return adapter.addMethod(write.build()).addMethod(read.build()).build();
+    }
+
+    /**
+     * Adds the lazily fetched adapter Gson has for the type of the field, returning the name of
+     * its accessor method. Lazily, so models referring to each other do not recurse.
+     */
+    private String addDelegate(TypeSpec.Builder adapter, VariableElement field) {
+        String name = field.getSimpleName() + ADAPTER_SUFFIX;
+        TypeName type = TypeName.get(field.asType()).box();
+        TypeName adapterType = ParameterizedTypeName.get(TYPE_ADAPTER, type);
+        CodeBlock token = type instanceof ParameterizedTypeName
+                ? CodeBlock.of("$L", TypeSpec.anonymousClassBuilder("")
+                        .superclass(ParameterizedTypeName.get(TYPE_TOKEN, type))
+                        .build())
+                : CodeBlock.of("$T.class", type);
+        adapter.addField(adapterType, name, Modifier.PRIVATE)
+                .addMethod(MethodSpec.methodBuilder(name)
+                        .addModifiers(Modifier.PRIVATE)
+                        .returns(adapterType)
+                        .addStatement("$T adapter = $N", adapterType, name)
+                        .beginControlFlow("if (adapter == null)")
+                        .addStatement("adapter = $N = gson.getAdapter($L)", name, token)
+                        .endControlFlow()
+                        .addStatement("return adapter")
+                        .build());
+        return name;
+    }
+
+    /**
+     * The reading expression for types read in place, null for the ones delegated to Gson.
+     */
+    private CodeBlock getReader(TypeMirror type) {
+        TypeKind kind = type.getKind();
+        if (!kind.isPrimitive()) {
+            if (isType(type, String.class)) {
+                return CodeBlock.of("in.nextString()");
+            }
+            try {
+                kind = mTypeUtils.unboxedType(type).getKind();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        switch (kind) {
+            case BOOLEAN:
+                return CodeBlock.of("in.nextBoolean()");
+            case BYTE:
+                return CodeBlock.of("(byte) in.nextInt()");
+            case SHORT:
+                return CodeBlock.of("(short) in.nextInt()");
+            case INT:
+                return CodeBlock.of("in.nextInt()");
+            case LONG:
+                return CodeBlock.of("in.nextLong()");
+            case FLOAT:
+                return CodeBlock.of("(float) in.nextDouble()");
+            case DOUBLE:
+                return CodeBlock.of("in.nextDouble()");
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The serialized fields of the class and its superclasses, like Gson: neither static nor
+     * transient.
+     */
+    private List<VariableElement> getFields(TypeElement typeElement) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (TypeElement type = typeElement; type != null; type = getSuperclass(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (!modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.TRANSIENT)) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * The {@code @SerializedName} value and alternates of the field, or its name.
+     */
+    private List<String> getJsonNames(VariableElement field) {
+        List<String> names = new ArrayList<>();
+        for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mElementUtils.getElementValuesWithDefaults(mirror).entrySet()) {
+                String key = entry.getKey().getSimpleName().toString();
+                if (key.equals("value")) {
+                    names.add(0, (String) entry.getValue().getValue());
+                } else if (key.equals("alternate")) {
+                    for (Object alternate : (List<?>) entry.getValue().getValue()) {
+                        names.add((String) ((AnnotationValue) alternate).getValue());
+                    }
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            names.add(field.getSimpleName().toString());
+        }
+        return names;
+    }
+
+    /**
+     * Reads the field directly when the adapter can access it, through its getter otherwise.
+     */
+    private CodeBlock getGetter(TypeElement typeElement, VariableElement field) {
+        if (isAccessible(typeElement, field)) {
+            return CodeBlock.of("value.$N", field.getSimpleName().toString());
+        }
+        String property = getPropertyName(field);
+        boolean isBoolean = field.asType().getKind() == TypeKind.BOOLEAN;
+        for (ExecutableElement method : ElementFilter.methodsIn(mElementUtils.getAllMembers(typeElement))) {
+            String name = method.getSimpleName().toString();
+            if ((name.equals("get" + property) || isBoolean && name.equals("is" + property))
+                    && method.getParameters().isEmpty() && isAccessible(typeElement, method)
+                    && mTypeUtils.isSameType(method.getReturnType(), field.asType())) {
+                return CodeBlock.of("value.$N()", name);
+            }
+        }
+        error(field, "Private @JsonModel field without an accessible get" + property + "()");
+        return null;
+    }
+
+    /**
+     * The name of the setter of the field, or an empty name when the adapter assigns it directly.
+     */
+    private String getSetter(TypeElement typeElement, VariableElement field) {
+        if (isAccessible(typeElement, field) && !field.getModifiers().contains(Modifier.FINAL)) {
+            return "";
+        }
+        String name = "set" + getPropertyName(field);
+        for (ExecutableElement method : ElementFilter.methodsIn(mElementUtils.getAllMembers(typeElement))) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                    && isAccessible(typeElement, method)
+                    && mTypeUtils.isSameType(method.getParameters().get(0).asType(), field.asType())) {
+                return name;
+            }
+        }
+        error(field, "Private or final @JsonModel field without an accessible " + name + "()");
+        return null;
+    }
+
+    /**
+     * The bean property of the field, without the {@code m} prefix of the member naming.
+     */
+    private static String getPropertyName(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        if (name.length() > 1 && name.charAt(0) == 'm' && Character.isUpperCase(name.charAt(1))) {
+            name = name.substring(1);
+        }
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private boolean isAccessible(TypeElement typeElement, Element member) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC) || getPackageName((TypeElement) member.getEnclosingElement())
+                .equals(getPackageName(typeElement));
+    }
+
+    private TypeSpec buildFactory(String simpleName, Map<String, TypeElement> models) {
+        TypeVariableName t = TypeVariableName.get("T");
+        MethodSpec.Builder create = MethodSpec.methodBuilder("create")
+                .addAnnotation(Override.class)
+                .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+                        .addMember("value", "$S", "unchecked")
+                        .build())
+                .addModifiers(Modifier.PUBLIC)
+                .addTypeVariable(t)
+                .returns(ParameterizedTypeName.get(TYPE_ADAPTER, t))
+                .addParameter(GSON, "gson")
+                .addParameter(ParameterizedTypeName.get(TYPE_TOKEN, t), "type")
+                .beginControlFlow("switch (type.getRawType().getName())");
+        TypeSpec.Builder factory = TypeSpec.classBuilder(simpleName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(TYPE_ADAPTER_FACTORY);
+        for (Map.Entry<String, TypeElement> entry : models.entrySet()) {
+            TypeElement model = entry.getValue();
+            factory.addOriginatingElement(model);
+            create.addCode("case $S:\n$>", entry.getKey())
+                    .addStatement("return ($T) new $T(gson)$<", ParameterizedTypeName.get(TYPE_ADAPTER, t),
+                            ClassName.get(getPackageName(model), getAdapterName(model)));
+        }
+        create.addCode("default:\n$>")
+                .addStatement("return null$<")
+                .endControlFlow();
+        return factory.addMethod(create.build()).build();
+    }
+
+    private String getAdapterName(TypeElement type) {
+        String packageName = getPackageName(type);
+        String binaryName = mElementUtils.getBinaryName(type).toString();
+        if (!packageName.isEmpty()) {
+            binaryName = binaryName.substring(packageName.length() + 1);
+        }
+        return binaryName.replace('$', '_') + ADAPTER_SUFFIX;
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().toString().startsWith("java.") ? null : element;
+    }
+
+    private boolean isType(TypeMirror type, Class<?> clazz) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(clazz.getName());
+    }
+
+    private String getPackageName(TypeElement type) {
+        return mElementUtils.getPackageOf(type).getQualifiedName().toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
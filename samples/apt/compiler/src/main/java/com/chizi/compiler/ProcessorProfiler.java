@@ -0,0 +1,277 @@
+package com.chizi.compiler;
+
+import com.squareup.javapoet.JavaFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+/**
+ * Records where an annotation processor spends its time when the {@value #OPTION} processor
+ * option names a report file: per round, per annotated element and per generated file, with the
+ * number and size of the generated files. Every processor appends one JSON object per compilation
+ * to the report, one per line, so the file keeps the history across builds. Does nothing without
+ * the option.
+ */
+final class ProcessorProfiler {
+
+    static final String OPTION = "processorProfile";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Object REPORT_LOCK = new Object();
+
+    private final ProcessingEnvironment mEnvironment;
+    private final String mProcessorName;
+    private final File mReport;
+
+    private final StringBuilder mRounds = new StringBuilder();
+    private final StringBuilder mElements = new StringBuilder();
+    private final StringBuilder mFiles = new StringBuilder();
+    private int mRound;
+    private int mRoundElements;
+    private long mRoundStart;
+    private long mTotalNanos;
+    private int mFileCount;
+    private long mByteCount;
+
+    ProcessorProfiler(ProcessingEnvironment environment, Class<?> processor) {
+        mEnvironment = environment;
+        mProcessorName = processor.getName();
+        String report = environment.getOptions().get(OPTION);
+        mReport = report == null || report.isEmpty() ? null : new File(report);
+    }
+
+    /**
+     * @return the start time to pass to {@link #element}, 0 when not profiling
+     */
+    long start() {
+        return mReport == null ? 0 : System.nanoTime();
+    }
+
+    void beginRound() {
+        if (mReport != null) {
+            mRoundElements = 0;
+            mRoundStart = System.nanoTime();
+        }
+    }
+
+    void element(Element element, long start) {
+        if (mReport == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        mRoundElements++;
+        separate(mElements).append("{\"round\":").append(mRound + 1)
+                .append(",\"element\":").append(quote(getName(element)))
+                .append(",\"nanos\":").append(nanos).append('}');
+    }
+
+    /**
+     * Writes the file through the {@link Filer}, recording the time it took and its size.
+     */
+    void writeTo(JavaFile javaFile) throws IOException {
+        if (mReport == null) {
+            javaFile.writeTo(mEnvironment.getFiler());
+            return;
+        }
+        long start = System.nanoTime();
+        CountingFiler filer = new CountingFiler(mEnvironment.getFiler());
+        javaFile.writeTo(filer);
+        long nanos = System.nanoTime() - start;
+        String name = javaFile.packageName.isEmpty()
+                ? javaFile.typeSpec.name : javaFile.packageName + "." + javaFile.typeSpec.name;
+        mFileCount++;
+        mByteCount += filer.mBytes;
+        separate(mFiles).append("{\"round\":").append(mRound + 1)
+                .append(",\"file\":").append(quote(name))
+                .append(",\"nanos\":").append(nanos)
+                .append(",\"bytes\":").append(filer.mBytes).append('}');
+    }
+
+    /**
+     * Ends the round, and writes the report after the last one.
+     */
+    void endRound(RoundEnvironment roundEnvironment) {
+        if (mReport == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - mRoundStart;
+        mTotalNanos += nanos;
+        separate(mRounds).append("{\"round\":").append(++mRound)
+                .append(",\"nanos\":").append(nanos)
+                .append(",\"elements\":").append(mRoundElements).append('}');
+        if (roundEnvironment.processingOver()) {
+            report();
+        }
+    }
+
+    private void report() {
+        String line = "{\"processor\":" + quote(mProcessorName)
+                + ",\"timestamp\":" + System.currentTimeMillis()
+                + ",\"totalNanos\":" + mTotalNanos
+                + ",\"generatedFiles\":" + mFileCount
+                + ",\"generatedBytes\":" + mByteCount
+                + ",\"rounds\":[" + mRounds + "]"
+                + ",\"elements\":[" + mElements + "]"
+                + ",\"files\":[" + mFiles + "]}\n";
+        File parent = mReport.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            warning("Unable to create " + parent);
+            return;
+        }
+        // Locked, as parallel compilations may share the report.
+        synchronized (REPORT_LOCK) {
+            try (FileOutputStream output = new FileOutputStream(mReport, true)) {
+                FileLock lock = lock(output.getChannel());
+                try {
+                    output.write(line.getBytes(UTF_8));
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                warning("Unable to write processor profile " + mReport + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * File locks are held by the whole JVM, so in a build daemon a processor loaded by another
+     * class loader may hold it already, which makes {@link FileChannel#lock()} throw instead of
+     * blocking. Waits for that one too.
+     */
+    private static FileLock lock(FileChannel channel) throws IOException {
+        while (true) {
+            try {
+                return channel.lock();
+            } catch (OverlappingFileLockException e) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for the report lock");
+                }
+            }
+        }
+    }
+
+    private void warning(String message) {
+        mEnvironment.getMessager().printMessage(Diagnostic.Kind.WARNING, message);
+    }
+
+    private static StringBuilder separate(StringBuilder builder) {
+        return builder.length() == 0 ? builder : builder.append(',');
+    }
+
+    private static String getName(Element element) {
+        if (element instanceof TypeElement) {
+            return ((TypeElement) element).getQualifiedName().toString();
+        }
+        return getName(element.getEnclosingElement()) + "#" + element.getSimpleName();
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Counts the UTF-8 bytes of the source files written through it.
+     */
+    private static final class CountingFiler implements Filer {
+
+        private final Filer mDelegate;
+        long mBytes;
+
+        CountingFiler(Filer delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+                throws IOException {
+            return new ForwardingJavaFileObject<JavaFileObject>(mDelegate.createSourceFile(name, originatingElements)) {
+                @Override
+                public Writer openWriter() throws IOException {
+                    return new FilterWriter(super.openWriter()) {
+                        @Override
+                        public void write(int c) throws IOException {
+                            super.write(c);
+                            mBytes += utf8Length((char) c);
+                        }
+
+                        @Override
+                        public void write(char[] buffer, int offset, int length) throws IOException {
+                            super.write(buffer, offset, length);
+                            for (int i = offset; i < offset + length; i++) {
+                                mBytes += utf8Length(buffer[i]);
+                            }
+                        }
+
+                        @Override
+                        public void write(String string, int offset, int length) throws IOException {
+                            super.write(string, offset, length);
+                            for (int i = offset; i < offset + length; i++) {
+                                mBytes += utf8Length(string.charAt(i));
+                            }
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+                throws IOException {
+            return mDelegate.createClassFile(name, originatingElements);
+        }
+
+        @Override
+        public FileObject createResource(JavaFileManager.Location location, CharSequence pkg,
+                                         CharSequence relativeName, Element... originatingElements)
+                throws IOException {
+            return mDelegate.createResource(location, pkg, relativeName, originatingElements);
+        }
+
+        @Override
+        public FileObject getResource(JavaFileManager.Location location, CharSequence pkg,
+                                      CharSequence relativeName) throws IOException {
+            return mDelegate.getResource(location, pkg, relativeName);
+        }
+
+        /**
+         * Surrogates count 2 each, 4 for the pair.
+         */
+        private static int utf8Length(char c) {
+            return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+package com.chizi.compiler;
+
+import com.chizi.annotation.GenerateProxy;
+import com.chizi.annotation.InvocationListener;
+import com.google.auto.service.AutoService;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the proxy class of every {@link GenerateProxy} interface ahead of time. The generated
+ * class has the same shape as the ones the dynamic-proxy sample spins at runtime:
+ * a {@code (Object target, InvocationListener listener)} constructor, one method per interface
+ * method calling the listener and the target directly, {@code equals}, {@code hashCode} and
+ * {@code toString} included, and a {@code METHODS} table listing the methods by name and descriptor
+ * in method index order.
+ */
+@AutoService(Processor.class)
+public class ProxyProcessor extends AbstractProcessor {
+
+    static final String PROXY_SUFFIX = "$$Proxy";
+
+    private static final ClassName LISTENER = ClassName.get(InvocationListener.class);
+    private static final Set<String> FORWARDED_OBJECT_METHODS = new HashSet<>(
+            Arrays.asList("equals(Ljava/lang/Object;)", "hashCode()", "toString()"));
+
+    private Elements mElementUtils;
+    private Types mTypeUtils;
+    private ProcessorProfiler mProfiler;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnvironment) {
+        super.init(processingEnvironment);
+        mElementUtils = processingEnvironment.getElementUtils();
+        mTypeUtils = processingEnvironment.getTypeUtils();
+        mProfiler = new ProcessorProfiler(processingEnvironment, getClass());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GenerateProxy.class.getCanonicalName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(ProcessorProfiler.OPTION);
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
+        mProfiler.beginRound();
+        try {
+            processRound(roundEnvironment);
+        } finally {
+            mProfiler.endRound(roundEnvironment);
+        }
+        return false;
+    }
+
+    private void processRound(RoundEnvironment roundEnvironment) {
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(GenerateProxy.class)) {
+            TypeElement typeElement = (TypeElement) element;
+            if (typeElement.getKind() != ElementKind.INTERFACE || !typeElement.getTypeParameters().isEmpty()) {
+                error(typeElement, "@GenerateProxy only applies to non-generic interfaces");
+                continue;
+            }
+            long start = mProfiler.start();
+            try {
+                mProfiler.writeTo(JavaFile.builder(getPackageName(typeElement), buildProxy(typeElement)).build());
+            } catch (IOException e) {
+                error(typeElement, "Unable to write proxy for " + typeElement + ": " + e.getMessage());
+            }
+            mProfiler.element(typeElement, start);
+        }
+    }
+
+    private TypeSpec buildProxy(TypeElement typeElement) {
+        TypeName interfaceName = TypeName.get(typeElement.asType());
+        TypeSpec.Builder builder = TypeSpec.classBuilder(getProxySimpleName(typeElement))
+                .addOriginatingElement(typeElement)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(interfaceName)
+                .addField(interfaceName, "target", Modifier.PRIVATE, Modifier.FINAL)
+                .addField(LISTENER, "listener", Modifier.PRIVATE, Modifier.FINAL)
+                .addMethod(MethodSpec.constructorBuilder()
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(Object.class, "target")
+                        .addParameter(LISTENER, "listener")
+                        .addStatement("this.target = ($T) target", interfaceName)
+                        .addStatement("this.listener = listener")
+                        .build());
+
+        List<ExecutableElement> methods = getProxyMethods(typeElement);
+        CodeBlock.Builder table = CodeBlock.builder().add("{");
+        DeclaredType declaredType = (DeclaredType) typeElement.asType();
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            table.add(i == 0 ? "$S" : ", $S", method.getSimpleName() + getDescriptor(method));
+            builder.addMethod(buildMethod(declaredType, method, i));
+        }
+        builder.addField(FieldSpec.builder(ArrayTypeName.of(String.class), "METHODS",
+                Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .initializer(table.add("}").build())
+                .build());
+        return builder.build();
+    }
+
+    /**
+     * Overrides the method as a member of the proxied interface, so type variables of its
+     * superinterfaces are replaced by their arguments.
+     */
+    private MethodSpec buildMethod(DeclaredType declaredType, ExecutableElement method, int index) {
+        ExecutableType methodType = (ExecutableType) mTypeUtils.asMemberOf(declaredType, method);
+        MethodSpec.Builder builder = method.getModifiers().contains(Modifier.NATIVE)
+                ? overridingNative(method, methodType) : MethodSpec.overriding(method, declaredType, mTypeUtils);
+        List<String> arguments = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            arguments.add(parameter.getSimpleName().toString());
+        }
+        CodeBlock call = CodeBlock.of("this.target.$N($L)", method.getSimpleName().toString(), join(arguments));
+        boolean isVoid = methodType.getReturnType().getKind() == TypeKind.VOID;
+
+        builder.addStatement("long $$token = this.listener.onEnter($L)", index);
+        if (!isVoid) {
+            builder.addStatement("$T $$result", TypeName.get(methodType.getReturnType()));
+        }
+        builder.beginControlFlow("try")
+                .addStatement(isVoid ? "$L" : "$$result = $L", call)
+                .nextControlFlow("catch ($T $$error)", Throwable.class)
+                .addStatement("this.listener.onExit($L, $$token, $$error)", index)
+                .addStatement("throw $$error")
+                .endControlFlow()
+                .addStatement("this.listener.onExit($L, $$token, null)", index);
+        if (!isVoid) {
+            builder.addStatement("return $$result");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Same as {@link MethodSpec#overriding}, which would keep the {@code native} modifier of
+     * {@code Object.hashCode}.
+     */
+    private static MethodSpec.Builder overridingNative(ExecutableElement method, ExecutableType methodType) {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(method.getSimpleName().toString())
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.get(methodType.getReturnType()));
+        List<? extends VariableElement> parameters = method.getParameters();
+        List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+        for (int i = 0; i < parameters.size(); i++) {
+            builder.addParameter(TypeName.get(parameterTypes.get(i)), parameters.get(i).getSimpleName().toString());
+        }
+        return builder;
+    }
+
+    /**
+     * Every instance method of the interface and its superinterfaces, overridden ones only once
+     * with the most specific return type, then the methods of {@code Object} a proxy forwards.
+     * Return types are compared erased, as the runtime proxies of the dynamic-proxy sample do.
+     */
+    private List<ExecutableElement> getProxyMethods(TypeElement typeElement) {
+        Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(mElementUtils.getAllMembers(typeElement))) {
+            Element owner = method.getEnclosingElement();
+            if (owner.getKind() != ElementKind.INTERFACE || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String key = method.getSimpleName() + getDescriptor(method);
+            key = key.substring(0, key.indexOf(')') + 1);
+            ExecutableElement existing = methods.get(key);
+            if (existing == null || isNarrower(method.getReturnType(), existing.getReturnType())) {
+                methods.put(key, method);
+            }
+        }
+        TypeElement object = mElementUtils.getTypeElement(Object.class.getCanonicalName());
+        for (ExecutableElement method : ElementFilter.methodsIn(object.getEnclosedElements())) {
+            String key = method.getSimpleName() + getDescriptor(method);
+            key = key.substring(0, key.indexOf(')') + 1);
+            if (FORWARDED_OBJECT_METHODS.contains(key) && !methods.containsKey(key)) {
+                methods.put(key, method);
+            }
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    private boolean isNarrower(TypeMirror type, TypeMirror than) {
+        TypeMirror erased = mTypeUtils.erasure(type);
+        TypeMirror erasedThan = mTypeUtils.erasure(than);
+        return !mTypeUtils.isSameType(erased, erasedThan) && mTypeUtils.isAssignable(erased, erasedThan);
+    }
+
+    private String getDescriptor(ExecutableElement method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (VariableElement parameter : method.getParameters()) {
+            descriptor.append(getDescriptor(parameter.asType()));
+        }
+        return descriptor.append(')').append(getDescriptor(method.getReturnType())).toString();
+    }
+
+    private String getDescriptor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case CHAR:
+                return "C";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case VOID:
+                return "V";
+            case ARRAY:
+                return "[" + getDescriptor(((ArrayType) type).getComponentType());
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                return "L" + mElementUtils.getBinaryName(element).toString().replace('.', '/') + ";";
+            default:
+                return getDescriptor(mTypeUtils.erasure(type));
+        }
+    }
+
+    private String getProxySimpleName(TypeElement type) {
+        String packageName = getPackageName(type);
+        String binaryName = mElementUtils.getBinaryName(type).toString();
+        if (!packageName.isEmpty()) {
+            binaryName = binaryName.substring(packageName.length() + 1);
+        }
+        return binaryName + PROXY_SUFFIX;
+    }
+
+    private String getPackageName(TypeElement type) {
+        return mElementUtils.getPackageOf(type).getQualifiedName().toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(parts.get(i));
+        }
+        return builder.toString();
+    }
+
+}
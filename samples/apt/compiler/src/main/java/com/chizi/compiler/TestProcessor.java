@@ -11,39 +11,78 @@ import java.util.Collections;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
 
+/**
+ * Generates {@code com.chizi.helloworld.HelloWorld} once per compilation if any {@link Test}
+ * element is present. Aggregating for Gradle incremental compilation, since the single output
+ * depends on all of them.
+ */
 @AutoService(Processor.class)
 public class TestProcessor extends AbstractProcessor {
 
+    private ProcessorProfiler mProfiler;
+    private boolean mGenerated;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnvironment) {
+        super.init(processingEnvironment);
+        mProfiler = new ProcessorProfiler(processingEnvironment, getClass());
+    }
+
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         return Collections.singleton(Test.class.getCanonicalName());
     }
 
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(ProcessorProfiler.OPTION);
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> set, RoundEnvironment roundEnvironment) {
+        mProfiler.beginRound();
+        try {
+            processRound(roundEnvironment);
+        } finally {
+            mProfiler.endRound(roundEnvironment);
+        }
+        return false;
+    }
+
+    private void processRound(RoundEnvironment roundEnvironment) {
+        Set<? extends Element> elements = roundEnvironment.getElementsAnnotatedWith(Test.class);
+        if (mGenerated || elements.isEmpty()) {
+            return;
+        }
+        mGenerated = true;
         MethodSpec main = MethodSpec.methodBuilder("main")
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .returns(void.class)
                 .addParameter(String[].class, "args")
                 .build();
-        TypeSpec helloWorld = TypeSpec.classBuilder("HelloWorld")
+        TypeSpec.Builder helloWorld = TypeSpec.classBuilder("HelloWorld")
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addMethod(main)
-                .build();
-        JavaFile javaFile = JavaFile.builder("com.chizi.helloworld", helloWorld)
+                .addMethod(main);
+        for (Element element : elements) {
+            helloWorld.addOriginatingElement(element);
+        }
+        JavaFile javaFile = JavaFile.builder("com.chizi.helloworld", helloWorld.build())
                 .build();
 
         try {
-            javaFile.writeTo(processingEnv.getFiler());
+            mProfiler.writeTo(javaFile);
         } catch (IOException e) {
-            e.printStackTrace();
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + javaFile.typeSpec.name + ": " + e.getMessage());
         }
-        return false;
     }
 
 }
@@ -0,0 +1,66 @@
+package com.chizi.benchmark;
+
+import com.chizi.java_lib.InvocationHandlerImpl;
+import com.chizi.java_lib.Operate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eight threads calling the same proxy, so they all record into the same latency histogram.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ContendedDispatchBenchmark {
+
+    private Operate mJdkProxy;
+    private Operate mGeneratedProxy;
+    private Operate mInterceptorProxy;
+
+    @Setup
+    public void setUp() {
+        Operate target = new NoopOperate();
+        mJdkProxy = Proxies.jdkProxy(target, InvocationHandlerImpl.DispatchMode.METHOD_HANDLE);
+        mGeneratedProxy = Proxies.generatedProxy(target);
+        mInterceptorProxy = Proxies.interceptorProxy(target);
+    }
+
+    @Benchmark
+    public int jdkProxy(Arguments arguments) {
+        return mJdkProxy.add(arguments.mA, arguments.mB);
+    }
+
+    @Benchmark
+    public int generatedProxy(Arguments arguments) {
+        return mGeneratedProxy.add(arguments.mA, arguments.mB);
+    }
+
+    @Benchmark
+    public int interceptorProxy(Arguments arguments) {
+        return mInterceptorProxy.add(arguments.mA, arguments.mB);
+    }
+
+    @State(Scope.Thread)
+    public static class Arguments {
+
+        int mA = 1;
+        int mB = 2;
+    }
+
+}
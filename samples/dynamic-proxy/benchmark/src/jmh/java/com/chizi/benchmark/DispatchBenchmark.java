@@ -0,0 +1,100 @@
+package com.chizi.benchmark;
+
+import com.chizi.java_lib.InvocationHandlerImpl;
+import com.chizi.java_lib.MethodInvoker;
+import com.chizi.java_lib.MethodInvokers;
+import com.chizi.java_lib.Operate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of each way a call reaches {@link Operate#add(int, int)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DispatchBenchmark {
+
+    // not final, so the JIT cannot fold the arguments away
+    private int mA = 1;
+    private int mB = 2;
+    private Object[] mArgs = {1, 2};
+
+    private NoopOperate mTarget;
+    private MethodInvoker mReflective;
+    private MethodInvoker mCached;
+    private Operate mJdkProxyReflection;
+    private Operate mJdkProxyMethodHandle;
+    private Operate mGeneratedProxy;
+    private Operate mAsmProxy;
+    private Operate mInterceptorProxy;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        mTarget = new NoopOperate();
+        Method add = Operate.class.getMethod("add", int.class, int.class);
+        mReflective = MethodInvokers.reflective(add);
+        mCached = MethodInvokers.get(add);
+        mJdkProxyReflection = Proxies.jdkProxy(mTarget, InvocationHandlerImpl.DispatchMode.REFLECTION);
+        mJdkProxyMethodHandle = Proxies.jdkProxy(mTarget, InvocationHandlerImpl.DispatchMode.METHOD_HANDLE);
+        mGeneratedProxy = Proxies.generatedProxy(mTarget);
+        mAsmProxy = Proxies.asmProxy(mTarget);
+        mInterceptorProxy = Proxies.interceptorProxy(mTarget);
+    }
+
+    @Benchmark
+    public int direct() {
+        return mTarget.add(mA, mB);
+    }
+
+    @Benchmark
+    public Object methodInvoke() throws Throwable {
+        return mReflective.invoke(mTarget, mArgs);
+    }
+
+    @Benchmark
+    public Object cachedInvoker() throws Throwable {
+        return mCached.invoke(mTarget, mArgs);
+    }
+
+    @Benchmark
+    public int jdkProxyReflection() {
+        return mJdkProxyReflection.add(mA, mB);
+    }
+
+    @Benchmark
+    public int jdkProxyMethodHandle() {
+        return mJdkProxyMethodHandle.add(mA, mB);
+    }
+
+    @Benchmark
+    public int generatedProxy() {
+        return mGeneratedProxy.add(mA, mB);
+    }
+
+    @Benchmark
+    public int asmProxy() {
+        return mAsmProxy.add(mA, mB);
+    }
+
+    @Benchmark
+    public int interceptorProxy() {
+        return mInterceptorProxy.add(mA, mB);
+    }
+
+}
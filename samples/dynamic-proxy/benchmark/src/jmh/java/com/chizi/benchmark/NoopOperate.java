@@ -0,0 +1,34 @@
+package com.chizi.benchmark;
+
+import com.chizi.java_lib.Operate;
+
+import java.util.List;
+
+/**
+ * An {@link Operate} doing next to nothing, so benchmarks measure the dispatch around it.
+ */
+public class NoopOperate implements RuntimeOperate {
+
+    @Override
+    public void method1() {
+    }
+
+    @Override
+    public void method2() {
+    }
+
+    @Override
+    public void method3() {
+    }
+
+    @Override
+    public int add(int a, int b) {
+        return a + b;
+    }
+
+    @Override
+    public List<Integer> squareAll(List<Integer> values) {
+        return values;
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.chizi.benchmark;
+
+import com.chizi.java_lib.GeneratedProxies;
+import com.chizi.java_lib.InterceptorHandler;
+import com.chizi.java_lib.InvocationHandlerImpl;
+import com.chizi.java_lib.LatencyListener;
+import com.chizi.java_lib.MethodMetrics;
+import com.chizi.java_lib.Operate;
+import com.chizi.java_lib.TimingInterceptor;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * The {@link Operate} proxies under test. Every proxy records call latency, so they all do the
+ * same work around the target.
+ */
+final class Proxies {
+
+    private static final Class<?>[] INTERFACES = {Operate.class};
+    private static final Class<?>[] RUNTIME_INTERFACES = {RuntimeOperate.class};
+
+    private Proxies() {
+    }
+
+    static Operate jdkProxy(Operate target, InvocationHandlerImpl.DispatchMode dispatchMode) {
+        return (Operate) Proxy.newProxyInstance(Operate.class.getClassLoader(), INTERFACES,
+                new InvocationHandlerImpl(target, dispatchMode));
+    }
+
+    /**
+     * A proxy of the class the apt {@code ProxyProcessor} wrote for {@link Operate}.
+     */
+    static Operate generatedProxy(Operate target) {
+        return generatedProxy(Operate.class.getClassLoader(), INTERFACES, target);
+    }
+
+    /**
+     * A proxy of a class generated with ASM at runtime.
+     */
+    static Operate asmProxy(RuntimeOperate target) {
+        return generatedProxy(RuntimeOperate.class.getClassLoader(), RUNTIME_INTERFACES, target);
+    }
+
+    private static Operate generatedProxy(ClassLoader loader, Class<?>[] interfaces, Operate target) {
+        return GeneratedProxies.newProxyInstance(loader, interfaces, target,
+                new LatencyListener(new MethodMetrics(), GeneratedProxies.getProxyMethods(loader, interfaces)));
+    }
+
+    static Operate interceptorProxy(Operate target) {
+        return new InterceptorHandler.Builder()
+                .addInterceptor(new TimingInterceptor(new MethodMetrics()))
+                .build(Operate.class, target);
+    }
+
+}
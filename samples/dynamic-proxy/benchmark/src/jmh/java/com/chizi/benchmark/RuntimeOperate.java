@@ -0,0 +1,10 @@
+package com.chizi.benchmark;
+
+import com.chizi.java_lib.Operate;
+
+/**
+ * {@link Operate} under another name. No proxy class is written for it at compile time, so
+ * {@link com.chizi.java_lib.GeneratedProxies} has to generate one with ASM.
+ */
+public interface RuntimeOperate extends Operate {
+}
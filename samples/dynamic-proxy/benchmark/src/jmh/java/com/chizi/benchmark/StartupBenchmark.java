@@ -0,0 +1,57 @@
+package com.chizi.benchmark;
+
+import com.chizi.java_lib.InvocationHandlerImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the first proxy of each kind and its first call, in a JVM that has not made one yet.
+ * Proxy classes are cached once made, so every measurement gets a fork of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StartupBenchmark {
+
+    private NoopOperate mTarget;
+
+    @Setup
+    public void setUp() {
+        mTarget = new NoopOperate();
+    }
+
+    @Benchmark
+    public int jdkProxy() {
+        return Proxies.jdkProxy(mTarget, InvocationHandlerImpl.DispatchMode.METHOD_HANDLE).add(1, 2);
+    }
+
+    @Benchmark
+    public int generatedProxy() {
+        return Proxies.generatedProxy(mTarget).add(1, 2);
+    }
+
+    @Benchmark
+    public int asmProxy() {
+        return Proxies.asmProxy(mTarget).add(1, 2);
+    }
+
+    @Benchmark
+    public int interceptorProxy() {
+        return Proxies.interceptorProxy(mTarget).add(1, 2);
+    }
+
+}
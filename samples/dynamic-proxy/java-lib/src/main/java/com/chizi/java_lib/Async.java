@@ -0,0 +1,16 @@
+package com.chizi.java_lib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a void method of an {@link AsyncInvocationHandler} proxy to run on the handler's executor
+ * without the caller waiting for it. Methods returning
+ * {@link java.util.concurrent.CompletableFuture} are asynchronous without this.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Async {
+}
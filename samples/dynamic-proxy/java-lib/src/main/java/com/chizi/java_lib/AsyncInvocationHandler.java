@@ -0,0 +1,236 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proxies an asynchronous interface onto a blocking target. A method returning
+ * {@link CompletableFuture}, or a void method marked {@link Async}, runs the target method of the
+ * same name and parameters on an executor and returns at once:
+ * <pre>
+ * AsyncOperate operate = new AsyncInvocationHandler.Builder()
+ *         .maxConcurrency(64)
+ *         .build(AsyncOperate.class, Operate.class, new OperateImpl());
+ * CompletableFuture.allOf(operate.method1(), operate.method2(), operate.method3()).join();
+ * </pre>
+ * Other methods run synchronously on the caller's thread.
+ * <p>
+ * By default every call gets its own virtual thread when the JDK has them (21+), and a pooled
+ * daemon thread otherwise, from one executor shared by the handlers built without their own. A
+ * call the executor rejects fails with the {@link RejectedExecutionException}.
+ * <p>
+ * At most {@code maxConcurrency} calls run at once, later ones queue up without blocking their
+ * callers. Cancelling a returned future with {@code mayInterruptIfRunning} interrupts the target if
+ * it is already running, and drops the call if it is still queued.
+ */
+public final class AsyncInvocationHandler implements InvocationHandler {
+
+    private final Object mTarget;
+    private final Map<Method, Dispatch> mDispatches;
+    private final ExecutorService mExecutor;
+    private final int mMaxConcurrency;
+
+    private final Queue<Call> mPending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mRunning = new AtomicInteger();
+
+    private AsyncInvocationHandler(Object target, Map<Method, Dispatch> dispatches, ExecutorService executor, int maxConcurrency) {
+        mTarget = target;
+        mDispatches = dispatches;
+        mExecutor = executor;
+        mMaxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Dispatch dispatch = mDispatches.get(method);
+        if (dispatch == null) {
+            // equals, hashCode and toString from Object
+            return MethodInvokers.get(method).invoke(mTarget, args);
+        }
+        if (!dispatch.mAsync) {
+            return dispatch.mInvoker.invoke(mTarget, args);
+        }
+        Call call = new Call(dispatch.mInvoker, args);
+        mPending.offer(call);
+        drain();
+        return dispatch.mReturnsFuture ? call : null;
+    }
+
+    /**
+     * Starts queued calls while fewer than {@code maxConcurrency} are running.
+     */
+    private void drain() {
+        while (!mPending.isEmpty()) {
+            int running = mRunning.get();
+            if (running >= mMaxConcurrency) {
+                // a running call drains again when it finishes
+                return;
+            }
+            if (!mRunning.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            Call call = mPending.poll();
+            if (call == null) {
+                mRunning.decrementAndGet();
+                continue;
+            }
+            try {
+                mExecutor.execute(call);
+            } catch (RejectedExecutionException e) {
+                // e.g. the executor was shut down, the call never runs to release its slot
+                mRunning.decrementAndGet();
+                call.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * The executor of the handlers built without one, created on first use and shared by all.
+     */
+    private static final class DefaultExecutor {
+
+        static final ExecutorService INSTANCE = newDefaultExecutor();
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // no virtual threads before JDK 21
+            final AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "async-proxy-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    public static final class Builder {
+
+        private ExecutorService mExecutor;
+        private int mMaxConcurrency = Integer.MAX_VALUE;
+
+        public Builder executor(ExecutorService executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("maxConcurrency < 1");
+            }
+            mMaxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param targetInterface the blocking interface {@code target} implements, each method of
+         *                        {@code intf} is bound to the one with the same name and parameters
+         */
+        @SuppressWarnings("unchecked")
+        public <T, S> T build(Class<T> intf, Class<S> targetInterface, S target) {
+            Map<Method, Dispatch> dispatches = new HashMap<>();
+            for (Method method : intf.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                boolean returnsFuture = method.getReturnType() == CompletableFuture.class;
+                boolean async = returnsFuture
+                        || (method.isAnnotationPresent(Async.class) && method.getReturnType() == void.class);
+                Method targetMethod;
+                try {
+                    targetMethod = targetInterface.getMethod(method.getName(), method.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException(targetInterface.getName() + " has no method matching " + method);
+                }
+                dispatches.put(method, new Dispatch(MethodInvokers.get(targetMethod), async, returnsFuture));
+            }
+            ExecutorService executor = mExecutor != null ? mExecutor : DefaultExecutor.INSTANCE;
+            AsyncInvocationHandler handler = new AsyncInvocationHandler(target, dispatches, executor, mMaxConcurrency);
+            return (T) Proxy.newProxyInstance(intf.getClassLoader(), new Class<?>[]{intf}, handler);
+        }
+    }
+
+    private static final class Dispatch {
+
+        final MethodInvoker mInvoker;
+        final boolean mAsync;
+        final boolean mReturnsFuture;
+
+        Dispatch(MethodInvoker invoker, boolean async, boolean returnsFuture) {
+            mInvoker = invoker;
+            mAsync = async;
+            mReturnsFuture = returnsFuture;
+        }
+    }
+
+    /**
+     * One queued or running call, and the future its caller holds.
+     */
+    private final class Call extends CompletableFuture<Object> implements Runnable {
+
+        private final MethodInvoker mInvoker;
+        private final Object[] mArgs;
+        private Thread mRunner;
+
+        Call(MethodInvoker invoker, Object[] args) {
+            mInvoker = invoker;
+            mArgs = args;
+        }
+
+        @Override
+        public void run() {
+            try {
+                synchronized (this) {
+                    if (isDone()) {
+                        // cancelled while queued
+                        return;
+                    }
+                    mRunner = Thread.currentThread();
+                }
+                complete(mInvoker.invoke(mTarget, mArgs));
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    mRunner = null;
+                }
+                // do not leak a late cancellation into the next task of a pooled thread
+                Thread.interrupted();
+                mRunning.decrementAndGet();
+                drain();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                synchronized (this) {
+                    if (mRunner != null) {
+                        mRunner.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.chizi.java_lib;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The asynchronous face of {@link Operate}, see {@link AsyncInvocationHandler}.
+ */
+public interface AsyncOperate {
+
+    CompletableFuture<Void> method1();
+
+    CompletableFuture<Void> method2();
+
+    CompletableFuture<Void> method3();
+
+    CompletableFuture<Integer> add(int a, int b);
+
+}
@@ -0,0 +1,13 @@
+package com.chizi.java_lib;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single calls batched onto {@link Operate#squareAll}, see {@link BatchingInvocationHandler}.
+ */
+public interface BatchOperate {
+
+    @Batched(bulkMethod = "squareAll", maxSize = 64, maxDelayMillis = 2)
+    CompletableFuture<Integer> square(int value);
+
+}
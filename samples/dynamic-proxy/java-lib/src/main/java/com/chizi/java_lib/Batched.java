@@ -0,0 +1,32 @@
+package com.chizi.java_lib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a one-argument method returning {@link java.util.concurrent.CompletableFuture} whose calls
+ * are collected and handed to a bulk method of the target, see {@link BatchingInvocationHandler}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batched {
+
+    /**
+     * Name of the target method taking a {@link java.util.List} of arguments and returning a
+     * {@link java.util.List} of results in the same order.
+     */
+    String bulkMethod();
+
+    /**
+     * A batch is sent as soon as it has this many calls, at least one.
+     */
+    int maxSize() default 64;
+
+    /**
+     * A batch is sent at the latest this long after its first call.
+     */
+    long maxDelayMillis() default 5;
+
+}
@@ -0,0 +1,292 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces many small calls into one bulk call. Calls to a {@link Batched} method are buffered
+ * until {@link Batched#maxSize()} of them arrived or {@link Batched#maxDelayMillis()} passed since
+ * the first one, then the arguments go to the target's bulk method in one list and every caller
+ * gets its own result through the returned future:
+ * <pre>
+ * BatchOperate operate = new BatchingInvocationHandler.Builder()
+ *         .build(BatchOperate.class, Operate.class, new OperateImpl());
+ * CompletableFuture&lt;Integer&gt; square = operate.square(3);
+ * </pre>
+ * Other methods call the target method of the same name and parameters directly. The achieved
+ * batch sizes are reported by {@link #stats(Object)}.
+ */
+public final class BatchingInvocationHandler implements InvocationHandler {
+
+    private static final ScheduledExecutorService sTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "batching-proxy-timer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Object mTarget;
+    private final Map<Method, MethodInvoker> mDirect;
+    private final Map<Method, Batcher> mBatchers;
+
+    private BatchingInvocationHandler(Object target, Map<Method, MethodInvoker> direct, Map<Method, Batcher> batchers) {
+        mTarget = target;
+        mDirect = direct;
+        mBatchers = batchers;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Batcher batcher = mBatchers.get(method);
+        if (batcher != null) {
+            return batcher.add(args[0]);
+        }
+        MethodInvoker invoker = mDirect.get(method);
+        if (invoker == null) {
+            // equals, hashCode and toString from Object
+            invoker = MethodInvokers.get(method);
+        }
+        return invoker.invoke(mTarget, args);
+    }
+
+    /**
+     * Batch statistics of every {@link Batched} method of a proxy built by {@link Builder}.
+     */
+    public static Map<String, Stats> stats(Object proxy) {
+        BatchingInvocationHandler handler = (BatchingInvocationHandler) Proxy.getInvocationHandler(proxy);
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        for (Map.Entry<Method, Batcher> entry : handler.mBatchers.entrySet()) {
+            Batcher batcher = entry.getValue();
+            stats.put(MethodMetrics.nameOf(entry.getKey()),
+                    new Stats(batcher.mBatchCount.get(), batcher.mCallCount.get(), batcher.mMaxBatchSize.get()));
+        }
+        return stats;
+    }
+
+    /**
+     * Runs the bulk calls of every handler built without an executor. Its threads only start once
+     * such a handler sends a batch.
+     */
+    private static final class DefaultExecutor {
+
+        static final Executor INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "batching-proxy");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static final class Builder {
+
+        private Executor mExecutor;
+
+        /**
+         * Where bulk calls run. By default a pool of daemon threads shared by the handlers built
+         * without their own.
+         */
+        public Builder executor(Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T, S> T build(Class<T> intf, Class<S> targetInterface, S target) {
+            Executor executor = mExecutor != null ? mExecutor : DefaultExecutor.INSTANCE;
+            Map<Method, MethodInvoker> direct = new HashMap<>();
+            Map<Method, Batcher> batchers = new HashMap<>();
+            for (Method method : intf.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                Batched batched = method.getAnnotation(Batched.class);
+                try {
+                    if (batched == null) {
+                        direct.put(method, MethodInvokers.get(targetInterface.getMethod(method.getName(), method.getParameterTypes())));
+                        continue;
+                    }
+                    if (method.getParameterTypes().length != 1 || method.getReturnType() != CompletableFuture.class) {
+                        throw new IllegalArgumentException("@Batched method must take one argument and return CompletableFuture: " + method);
+                    }
+                    if (batched.maxSize() < 1) {
+                        throw new IllegalArgumentException("@Batched maxSize < 1: " + batched.maxSize() + " on " + method);
+                    }
+                    Method bulkMethod = targetInterface.getMethod(batched.bulkMethod(), List.class);
+                    if (bulkMethod.getReturnType() != List.class) {
+                        throw new IllegalArgumentException("bulk method must return a List: " + bulkMethod);
+                    }
+                    batchers.put(method, new Batcher(target, MethodInvokers.get(bulkMethod), batched, executor));
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException(targetInterface.getName() + " has no method matching " + method, e);
+                }
+            }
+            BatchingInvocationHandler handler = new BatchingInvocationHandler(target, direct, batchers);
+            return (T) Proxy.newProxyInstance(intf.getClassLoader(), new Class<?>[]{intf}, handler);
+        }
+    }
+
+    /**
+     * Buffers the calls of one {@link Batched} method.
+     */
+    private static final class Batcher {
+
+        private final Object mTarget;
+        private final MethodInvoker mBulkInvoker;
+        private final int mMaxSize;
+        private final long mMaxDelayMillis;
+        private final Executor mExecutor;
+
+        private final AtomicLong mBatchCount = new AtomicLong();
+        private final AtomicLong mCallCount = new AtomicLong();
+        private final AtomicLong mMaxBatchSize = new AtomicLong();
+
+        // guarded by this
+        private List<Object> mArguments;
+        private List<CompletableFuture<Object>> mFutures;
+        private ScheduledFuture<?> mTimeout;
+
+        Batcher(Object target, MethodInvoker bulkInvoker, Batched batched, Executor executor) {
+            mTarget = target;
+            mBulkInvoker = bulkInvoker;
+            mMaxSize = batched.maxSize();
+            mMaxDelayMillis = batched.maxDelayMillis();
+            mExecutor = executor;
+            reset();
+        }
+
+        CompletableFuture<Object> add(Object argument) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            List<Object> fullArguments = null;
+            List<CompletableFuture<Object>> fullFutures = null;
+            synchronized (this) {
+                mArguments.add(argument);
+                mFutures.add(future);
+                if (mArguments.size() >= mMaxSize) {
+                    if (mTimeout != null) {
+                        mTimeout.cancel(false);
+                    }
+                    fullArguments = mArguments;
+                    fullFutures = mFutures;
+                    reset();
+                } else if (mArguments.size() == 1) {
+                    final List<Object> batch = mArguments;
+                    mTimeout = sTimer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush(batch);
+                        }
+                    }, mMaxDelayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (fullArguments != null) {
+                send(fullArguments, fullFutures);
+            }
+            return future;
+        }
+
+        private void flush(List<Object> batch) {
+            List<Object> arguments;
+            List<CompletableFuture<Object>> futures;
+            synchronized (this) {
+                if (mArguments != batch) {
+                    // already sent because it filled up
+                    return;
+                }
+                arguments = mArguments;
+                futures = mFutures;
+                reset();
+            }
+            send(arguments, futures);
+        }
+
+        private void reset() {
+            mArguments = new ArrayList<>(mMaxSize);
+            mFutures = new ArrayList<>(mMaxSize);
+            mTimeout = null;
+        }
+
+        private void send(final List<Object> arguments, final List<CompletableFuture<Object>> futures) {
+            int size = arguments.size();
+            mBatchCount.incrementAndGet();
+            mCallCount.addAndGet(size);
+            long max = mMaxBatchSize.get();
+            while (size > max && !mMaxBatchSize.compareAndSet(max, size)) {
+                max = mMaxBatchSize.get();
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        List<?> results = (List<?>) mBulkInvoker.invoke(mTarget, new Object[]{arguments});
+                        if (results == null || results.size() != futures.size()) {
+                            throw new IllegalStateException("bulk method returned " + (results == null ? "null" : results.size() + " results")
+                                    + " for " + futures.size() + " calls");
+                        }
+                        for (int i = 0; i < futures.size(); i++) {
+                            futures.get(i).complete(results.get(i));
+                        }
+                    } catch (Throwable e) {
+                        for (CompletableFuture<Object> future : futures) {
+                            future.completeExceptionally(e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    public static final class Stats {
+
+        private final long mBatchCount;
+        private final long mCallCount;
+        private final long mMaxBatchSize;
+
+        Stats(long batchCount, long callCount, long maxBatchSize) {
+            mBatchCount = batchCount;
+            mCallCount = callCount;
+            mMaxBatchSize = maxBatchSize;
+        }
+
+        public long getBatchCount() {
+            return mBatchCount;
+        }
+
+        public long getCallCount() {
+            return mCallCount;
+        }
+
+        public long getMaxBatchSize() {
+            return mMaxBatchSize;
+        }
+
+        public double getAverageBatchSize() {
+            return mBatchCount == 0 ? 0 : (double) mCallCount / mBatchCount;
+        }
+
+        @Override
+        public String toString() {
+            return "batches=" + mBatchCount + ", calls=" + mCallCount + ", average=" + String.format("%.1f", getAverageBatchSize())
+                    + ", max=" + mMaxBatchSize;
+        }
+    }
+
+}
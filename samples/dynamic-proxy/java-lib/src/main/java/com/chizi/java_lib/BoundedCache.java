@@ -0,0 +1,258 @@
+package com.chizi.java_lib;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent cache bounded by size and, optionally, by time since write.
+ * <p>
+ * Keys are spread over independently locked segments, each a segmented LRU with a probation and a
+ * protected list, as in the main region of W-TinyLFU. A new entry only replaces the segment's
+ * eviction candidate if it was asked for at least as often recently, as estimated by a small
+ * count-min sketch (TinyLFU admission). That keeps popular entries from being flushed by a scan of
+ * one-off keys. Steady-state hits do not allocate; admitting a key or promoting it to the protected
+ * list allocates a map entry.
+ */
+public final class BoundedCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 32;
+
+    private final Segment<K, V>[] mSegments;
+    private final long mExpireAfterWriteNanos;
+
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+    private final LongAdder mEvictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int maximumSize, long expireAfterWriteNanos) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize < 1");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maximumSize / MIN_SEGMENT_SIZE)));
+        int segmentSize = (maximumSize + segmentCount - 1) / segmentCount;
+        mSegments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            mSegments[i] = new Segment<>(segmentSize);
+        }
+        mExpireAfterWriteNanos = expireAfterWriteNanos;
+    }
+
+    /**
+     * @return the cached value, or null if absent or expired
+     */
+    public V get(K key) {
+        int hash = spread(key.hashCode());
+        Segment<K, V> segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.mSketch.increment(hash);
+            Entry<V> entry = segment.mProtected.get(key);
+            if (entry == null) {
+                entry = segment.mProbation.remove(key);
+                if (entry != null && !isExpired(entry)) {
+                    segment.promote(key, entry);
+                }
+            }
+            if (entry != null && !isExpired(entry)) {
+                mHits.increment();
+                return entry.mValue;
+            }
+            if (entry != null) {
+                segment.mProtected.remove(key);
+                mEvictions.increment();
+            }
+        }
+        mMisses.increment();
+        return null;
+    }
+
+    /**
+     * Same as {@link #get}, without counting a hit or a miss, nor recording the access for
+     * admission and promotion. The entry still becomes the most recently used of its list, as
+     * the access-ordered lists offer no read leaving the order alone.
+     */
+    public V peek(K key) {
+        Segment<K, V> segment = segmentFor(spread(key.hashCode()));
+        synchronized (segment) {
+            Entry<V> entry = segment.mProtected.get(key);
+            if (entry == null) {
+                entry = segment.mProbation.get(key);
+            }
+            return entry == null || isExpired(entry) ? null : entry.mValue;
+        }
+    }
+
+    /**
+     * Stores a value, unless the segment is full and the key is asked for less often than the
+     * entry it would replace.
+     */
+    public void put(K key, V value) {
+        int hash = spread(key.hashCode());
+        Segment<K, V> segment = segmentFor(hash);
+        synchronized (segment) {
+            Entry<V> entry = segment.mProtected.get(key);
+            if (entry == null) {
+                entry = segment.mProbation.get(key);
+            }
+            if (entry != null) {
+                entry.mValue = value;
+                entry.mWriteNanos = System.nanoTime();
+                return;
+            }
+            if (segment.size() >= segment.mCapacity) {
+                LinkedHashMap<K, Entry<V>> victims = segment.mProbation.isEmpty() ? segment.mProtected : segment.mProbation;
+                Iterator<Map.Entry<K, Entry<V>>> eldest = victims.entrySet().iterator();
+                K victim = eldest.next().getKey();
+                if (segment.mSketch.frequency(hash) < segment.mSketch.frequency(spread(victim.hashCode()))) {
+                    mEvictions.increment();
+                    return;
+                }
+                eldest.remove();
+                mEvictions.increment();
+            }
+            segment.mProbation.put(key, new Entry<>(value, System.nanoTime()));
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hitCount() {
+        return mHits.sum();
+    }
+
+    public long missCount() {
+        return mMisses.sum();
+    }
+
+    /**
+     * Entries dropped for size or expiry, and new entries turned away by admission.
+     */
+    public long evictionCount() {
+        return mEvictions.sum();
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return mExpireAfterWriteNanos > 0 && System.nanoTime() - entry.mWriteNanos >= mExpireAfterWriteNanos;
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return mSegments[(hash >>> 16) & (mSegments.length - 1)];
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A segmented LRU: new entries start in probation and move to the protected list when read
+     * again, so eviction hits entries that were only used once before any that were reused.
+     */
+    private static final class Segment<K, V> {
+
+        final int mCapacity;
+        final int mProtectedCapacity;
+        final LinkedHashMap<K, Entry<V>> mProbation;
+        final LinkedHashMap<K, Entry<V>> mProtected;
+        final FrequencySketch mSketch;
+
+        Segment(int capacity) {
+            mCapacity = capacity;
+            mProtectedCapacity = Math.max(1, capacity * 4 / 5);
+            mProbation = new LinkedHashMap<>(16, 0.75f, true);
+            mProtected = new LinkedHashMap<>(16, 0.75f, true);
+            mSketch = new FrequencySketch(capacity);
+        }
+
+        int size() {
+            return mProbation.size() + mProtected.size();
+        }
+
+        void promote(K key, Entry<V> entry) {
+            mProtected.put(key, entry);
+            if (mProtected.size() > mProtectedCapacity) {
+                Iterator<Map.Entry<K, Entry<V>>> eldest = mProtected.entrySet().iterator();
+                Map.Entry<K, Entry<V>> demoted = eldest.next();
+                eldest.remove();
+                mProbation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+
+        V mValue;
+        long mWriteNanos;
+
+        Entry(V value, long writeNanos) {
+            mValue = value;
+            mWriteNanos = writeNanos;
+        }
+    }
+
+    /**
+     * A count-min sketch of recent key frequencies with four rows of byte counters saturating at 15,
+     * four counters per cached entry in each row. All counters are halved every
+     * {@code 10 * capacity} increments so old popularity fades. Guarded by the lock of its segment.
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97CB3127, 0xB2A3E1B5, 0x7F4A7C15, 0xC2B2AE35};
+
+        private final byte[] mTable;
+        private final int mMask;
+        private final int mSampleSize;
+        private int mAdditions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity) * 8 - 1);
+            mTable = new byte[DEPTH * width];
+            mMask = width - 1;
+            mSampleSize = 10 * Math.max(16, capacity);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (mTable[index] < MAX_COUNT) {
+                    mTable[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++mAdditions >= mSampleSize) {
+                for (int i = 0; i < mTable.length; i++) {
+                    mTable[i] >>= 1;
+                }
+                mAdditions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, mTable[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[row];
+            return row * (mMask + 1) + ((h ^ (h >>> 15)) & mMask);
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.chizi.java_lib;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the results of an interface method, keyed on its arguments, see
+ * {@link CachingInterceptor}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /**
+     * How many results are kept at most.
+     */
+    int maximumSize() default 1024;
+
+    /**
+     * How long a result is served after it was loaded, 0 to keep it until evicted.
+     */
+    long expireAfterWriteMillis() default 0;
+
+}
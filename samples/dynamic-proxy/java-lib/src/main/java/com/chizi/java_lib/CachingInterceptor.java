@@ -0,0 +1,206 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the results of {@link Cached} methods from a per-method {@link BoundedCache}. Other
+ * methods are not intercepted.
+ * <p>
+ * Methods with no or one argument use the argument itself as key, so a lookup allocates nothing
+ * beyond what the proxy already did. Concurrent calls with the same arguments that all miss are
+ * coalesced: only the first one reaches the target, the others wait for its result. A call made
+ * with the same arguments from within that load goes to the target instead of waiting for itself.
+ * <p>
+ * An instance caches the methods of a single proxy, whose target the cached results come from.
+ */
+public class CachingInterceptor implements Interceptor {
+
+    private static final Object NO_ARGUMENTS = new Object();
+    private static final Object NULL = new Object();
+
+    private final Map<Method, MethodCache> mCaches = new ConcurrentHashMap<>();
+
+    @Override
+    public Interceptor link(Method method) {
+        Cached cached = method.getAnnotation(Cached.class);
+        if (cached == null || method.getReturnType() == void.class) {
+            return null;
+        }
+        MethodCache cache = new MethodCache(cached.maximumSize(),
+                TimeUnit.MILLISECONDS.toNanos(cached.expireAfterWriteMillis()));
+        if (mCaches.putIfAbsent(method, cache) != null) {
+            throw new IllegalStateException("Already caching " + MethodMetrics.nameOf(method)
+                    + " for another proxy, use one CachingInterceptor per proxy");
+        }
+        return cache;
+    }
+
+    @Override
+    public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+        Interceptor cache = mCaches.get(chain.method());
+        if (cache == null) {
+            return chain.proceed(target, args);
+        }
+        return cache.intercept(chain, target, args);
+    }
+
+    /**
+     * Hit, miss, eviction and coalesced call counts of every cached method, keyed like
+     * {@link MethodMetrics#snapshot()}.
+     */
+    public Map<String, Stats> stats() {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        for (Map.Entry<Method, MethodCache> entry : mCaches.entrySet()) {
+            MethodCache cache = entry.getValue();
+            stats.put(MethodMetrics.nameOf(entry.getKey()), new Stats(cache.mCache.hitCount(),
+                    cache.mCache.missCount(), cache.mCache.evictionCount(), cache.mCoalesced.sum()));
+        }
+        return stats;
+    }
+
+    private static Object keyOf(Object[] args) {
+        if (args == null || args.length == 0) {
+            return NO_ARGUMENTS;
+        }
+        if (args.length == 1 && args[0] != null && !args[0].getClass().isArray()) {
+            return args[0];
+        }
+        return new ArgumentsKey(args);
+    }
+
+    private static final class MethodCache implements Interceptor {
+
+        final BoundedCache<Object, Object> mCache;
+        final ConcurrentMap<Object, Loading> mLoading = new ConcurrentHashMap<>();
+        final LongAdder mCoalesced = new LongAdder();
+
+        MethodCache(int maximumSize, long expireAfterWriteNanos) {
+            mCache = new BoundedCache<>(maximumSize, expireAfterWriteNanos);
+        }
+
+        @Override
+        public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+            Object key = keyOf(args);
+            Object value = mCache.get(key);
+            if (value != null) {
+                return value == NULL ? null : value;
+            }
+
+            Loading inFlight = mLoading.get(key);
+            Loading loading = null;
+            if (inFlight == null) {
+                loading = new Loading();
+                inFlight = mLoading.putIfAbsent(key, loading);
+            }
+            if (inFlight != null) {
+                if (inFlight.mLoader == Thread.currentThread()) {
+                    // called again while loading the same key, waiting would never end
+                    return chain.proceed(target, args);
+                }
+                mCoalesced.increment();
+                try {
+                    return inFlight.join();
+                } catch (CompletionException e) {
+                    throw e.getCause();
+                }
+            }
+            try {
+                // a load may have completed and left between the miss and winning the slot
+                value = mCache.peek(key);
+                if (value != null) {
+                    mCoalesced.increment();
+                    value = value == NULL ? null : value;
+                } else {
+                    value = chain.proceed(target, args);
+                    mCache.put(key, value == null ? NULL : value);
+                }
+                loading.complete(value);
+                return value;
+            } catch (Throwable e) {
+                loading.completeExceptionally(e);
+                throw e;
+            } finally {
+                mLoading.remove(key, loading);
+            }
+        }
+    }
+
+    /**
+     * The result of a load in flight, and the thread running it.
+     */
+    private static final class Loading extends CompletableFuture<Object> {
+
+        final Thread mLoader = Thread.currentThread();
+    }
+
+    private static final class ArgumentsKey {
+
+        private final Object[] mArgs;
+        private final int mHashCode;
+
+        ArgumentsKey(Object[] args) {
+            mArgs = args;
+            mHashCode = Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArgumentsKey && Arrays.deepEquals(mArgs, ((ArgumentsKey) o).mArgs);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    public static final class Stats {
+
+        private final long mHitCount;
+        private final long mMissCount;
+        private final long mEvictionCount;
+        private final long mCoalescedCount;
+
+        Stats(long hitCount, long missCount, long evictionCount, long coalescedCount) {
+            mHitCount = hitCount;
+            mMissCount = missCount;
+            mEvictionCount = evictionCount;
+            mCoalescedCount = coalescedCount;
+        }
+
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        public long getEvictionCount() {
+            return mEvictionCount;
+        }
+
+        /**
+         * Misses that waited for a load already in flight instead of calling the target.
+         */
+        public long getCoalescedCount() {
+            return mCoalescedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + mHitCount + ", misses=" + mMissCount + ", evictions=" + mEvictionCount
+                    + ", coalesced=" + mCoalescedCount;
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.chizi.java_lib;
+
+import com.chizi.annotation.InvocationListener;
+
+import org.objectweb.asm.Type;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A faster companion to {@link java.lang.reflect.Proxy}: proxy classes are generated by
+ * {@link ProxyClassGenerator} and call an {@link InvocationListener} and the target directly,
+ * instead of funneling every method through one {@link java.lang.reflect.InvocationHandler}.
+ * <p>
+ * One class is generated per class loader and interface set, later proxies reuse it. The cache
+ * holds neither the loaders nor the classes strongly, so both can be unloaded once unused, as with
+ * {@link java.lang.reflect.Proxy}. Only public interfaces are supported.
+ * <p>
+ * A single interface annotated with {@code @GenerateProxy} already has its proxy class
+ * {@code <Interface>$$Proxy} written by the apt {@code ProxyProcessor} at compile time. That class
+ * is loaded as is, so nothing is generated or defined at runtime.
+ */
+public final class GeneratedProxies {
+
+    private static final String CLASS_NAME_PREFIX = GeneratedProxies.class.getPackage().getName() + ".$GeneratedProxy";
+    private static final String PRECOMPILED_SUFFIX = "$$Proxy";
+    private static final String PRECOMPILED_METHODS_FIELD = "METHODS";
+
+    private static final AtomicInteger sNextClassNumber = new AtomicInteger();
+    /**
+     * The proxy classes of every loader by interface names. The classes are only weakly held, for
+     * through their loaders they hold the loader keys.
+     */
+    private static final Map<ClassLoader, Map<List<String>, WeakReference<Class<?>>>> sProxyClasses =
+            new WeakHashMap<>();
+    /**
+     * The constructor and methods of the proxy classes, kept by the classes themselves.
+     */
+    private static final ClassValue<ProxyClass> sDescriptions = new ClassValue<ProxyClass>() {
+        @Override
+        protected ProxyClass computeValue(Class<?> cls) {
+            return describe(cls);
+        }
+    };
+
+    private GeneratedProxies() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T newProxyInstance(ClassLoader loader, Class<?>[] interfaces, Object target, InvocationListener listener) {
+        for (Class<?> intf : interfaces) {
+            if (!intf.isInstance(target)) {
+                throw new IllegalArgumentException("target does not implement " + intf.getName());
+            }
+        }
+        try {
+            return (T) lookup(loader, interfaces).mConstructor.newInstance(target, listener);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The methods of the proxy class, indexed the same way as the {@code methodIndex} passed to
+     * {@link InvocationListener}.
+     */
+    public static Method[] getProxyMethods(ClassLoader loader, Class<?>... interfaces) {
+        return lookup(loader, interfaces).mMethods.clone();
+    }
+
+    public static Class<?> getProxyClass(ClassLoader loader, Class<?>... interfaces) {
+        return lookup(loader, interfaces).mConstructor.getDeclaringClass();
+    }
+
+    private static ProxyClass lookup(ClassLoader loader, Class<?>[] interfaces) {
+        List<String> names = new ArrayList<>(interfaces.length);
+        for (Class<?> intf : interfaces) {
+            names.add(intf.getName());
+        }
+        Class<?> cls;
+        synchronized (sProxyClasses) {
+            Map<List<String>, WeakReference<Class<?>>> classes = sProxyClasses.get(loader);
+            if (classes == null) {
+                classes = new HashMap<>();
+                sProxyClasses.put(loader, classes);
+            }
+            WeakReference<Class<?>> reference = classes.get(names);
+            cls = reference == null ? null : reference.get();
+            // the same names may stand for other classes, from another loader
+            if (cls == null || !Arrays.equals(cls.getInterfaces(), interfaces)) {
+                Class<?>[] copy = interfaces.clone();
+                cls = loadPrecompiled(copy);
+                if (cls == null) {
+                    cls = define(loader, copy);
+                }
+                classes.put(names, new WeakReference<Class<?>>(cls));
+            }
+        }
+        return sDescriptions.get(cls);
+    }
+
+    private static Class<?> define(ClassLoader loader, Class<?>[] interfaces) {
+        String className = CLASS_NAME_PREFIX + sNextClassNumber.getAndIncrement();
+        byte[] bytes = ProxyClassGenerator.generate(className, interfaces);
+        return new DefiningClassLoader(loader).define(className, bytes);
+    }
+
+    private static Class<?> loadPrecompiled(Class<?>[] interfaces) {
+        if (interfaces.length != 1) {
+            return null;
+        }
+        Class<?> intf = interfaces[0];
+        try {
+            Class<?> cls = Class.forName(intf.getName() + PRECOMPILED_SUFFIX, false, intf.getClassLoader());
+            return intf.isAssignableFrom(cls) && sDescriptions.get(cls) != null ? cls : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return null for a precompiled class not matching its interface
+     */
+    private static ProxyClass describe(Class<?> cls) {
+        Method[] methods = ProxyClassGenerator.getProxyMethods(cls.getInterfaces());
+        try {
+            Constructor<?> constructor = cls.getConstructor(Object.class, InvocationListener.class);
+            if (!cls.getName().endsWith(PRECOMPILED_SUFFIX)) {
+                return new ProxyClass(constructor, methods);
+            }
+            String[] order = (String[]) cls.getField(PRECOMPILED_METHODS_FIELD).get(null);
+            if (order.length != methods.length) {
+                // compiled against another version of the interface
+                return null;
+            }
+            Method[] ordered = new Method[order.length];
+            for (Method method : methods) {
+                int index = Arrays.asList(order).indexOf(method.getName() + Type.getMethodDescriptor(method));
+                if (index < 0) {
+                    return null;
+                }
+                ordered[index] = method;
+            }
+            return new ProxyClass(constructor, ordered);
+        } catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException e) {
+            if (cls.getName().endsWith(PRECOMPILED_SUFFIX)) {
+                return null;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class ProxyClass {
+
+        final Constructor<?> mConstructor;
+        final Method[] mMethods;
+
+        ProxyClass(Constructor<?> constructor, Method[] methods) {
+            mConstructor = constructor;
+            mMethods = methods;
+        }
+    }
+
+    /**
+     * Sees the proxied interfaces through the requested loader, and this library's own types
+     * through the loader that loaded it.
+     */
+    private static final class DefiningClassLoader extends ClassLoader {
+
+        DefiningClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String className, byte[] bytes) {
+            return defineClass(className, bytes, 0, bytes.length);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (name.equals(InvocationListener.class.getName())) {
+                return InvocationListener.class;
+            }
+            return super.findClass(name);
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.Method;
+
+/**
+ * One step around a proxied call, see {@link InterceptorHandler}.
+ */
+public interface Interceptor {
+
+    /**
+     * Called once per proxied method when the proxy is created.
+     *
+     * @return the interceptor to use for {@code method}, e.g. one holding per-method state,
+     * or null to leave the method alone. This interceptor by default.
+     */
+    default Interceptor link(Method method) {
+        return this;
+    }
+
+    /**
+     * Handles one call. Implementations usually call {@link Chain#proceed} exactly once, but may
+     * skip it (e.g. to serve a cached result) or call it again (e.g. to retry).
+     */
+    Object intercept(Chain chain, Object target, Object[] args) throws Throwable;
+
+    /**
+     * The rest of the chain after an interceptor. Chains are linked once per method and shared by
+     * every call, so they hold no per-call state.
+     */
+    interface Chain {
+
+        Method method();
+
+        Object proceed(Object target, Object[] args) throws Throwable;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link InvocationHandler} running each call through a list of {@link Interceptor}s. The chain
+ * of every interface method is linked once when the proxy is created, so a call only walks fixed,
+ * pre-built links, without iterators, lambdas or other per-call objects. Methods no interceptor
+ * applies to go straight to the target.
+ * <pre>
+ * Operate proxy = new InterceptorHandler.Builder()
+ *         .addInterceptor(new TimingInterceptor(metrics))
+ *         .addInterceptor(new RetryInterceptor(3, 10, IOException.class))
+ *         .build(Operate.class, target);
+ * </pre>
+ * Interceptors run in the order they were added, the first one outermost.
+ */
+public final class InterceptorHandler implements InvocationHandler {
+
+    private final Object mTarget;
+    private final Map<Method, Link> mChains;
+
+    private InterceptorHandler(Object target, Map<Method, Link> chains) {
+        mTarget = target;
+        mChains = chains;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Link chain = mChains.get(method);
+        if (chain == null) {
+            // equals, hashCode and toString from Object
+            return MethodInvokers.get(method).invoke(mTarget, args);
+        }
+        return chain.proceed(mTarget, args);
+    }
+
+    public static final class Builder {
+
+        private final List<Interceptor> mInterceptors = new ArrayList<>();
+
+        public Builder addInterceptor(Interceptor interceptor) {
+            if (interceptor == null) {
+                throw new NullPointerException("interceptor == null");
+            }
+            mInterceptors.add(interceptor);
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T build(Class<T> intf, T target) {
+            Map<Method, Link> chains = new HashMap<>();
+            for (Method method : intf.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                Link chain = new Link(method, null, null);
+                for (int i = mInterceptors.size() - 1; i >= 0; i--) {
+                    Interceptor interceptor = mInterceptors.get(i).link(method);
+                    if (interceptor != null) {
+                        chain = new Link(method, interceptor, chain);
+                    }
+                }
+                chains.put(method, chain);
+            }
+            InterceptorHandler handler = new InterceptorHandler(target, chains);
+            return (T) Proxy.newProxyInstance(intf.getClassLoader(), new Class<?>[]{intf}, handler);
+        }
+    }
+
+    /**
+     * Either an interceptor followed by the rest of the chain, or the final call to the target.
+     */
+    private static final class Link implements Interceptor.Chain {
+
+        private final Method mMethod;
+        private final Interceptor mInterceptor;
+        private final Link mNext;
+        private final MethodInvoker mInvoker;
+
+        Link(Method method, Interceptor interceptor, Link next) {
+            mMethod = method;
+            mInterceptor = interceptor;
+            mNext = next;
+            mInvoker = interceptor == null ? MethodInvokers.get(method) : null;
+        }
+
+        @Override
+        public Method method() {
+            return mMethod;
+        }
+
+        @Override
+        public Object proceed(Object target, Object[] args) throws Throwable {
+            if (mInterceptor == null) {
+                return mInvoker.invoke(target, args);
+            }
+            return mInterceptor.intercept(mNext, target, args);
+        }
+    }
+
+}
@@ -9,18 +9,56 @@ import java.lang.reflect.Method;
 
 public class InvocationHandlerImpl implements InvocationHandler {
 
+    /**
+     * How a proxied call reaches the target.
+     */
+    public enum DispatchMode {
+        /**
+         * {@link Method#invoke} on every call.
+         */
+        REFLECTION,
+        /**
+         * A {@link java.lang.invoke.MethodHandle} resolved once per method, see {@link MethodInvokers}.
+         */
+        METHOD_HANDLE
+    }
+
     private Object mTarget;
+    private DispatchMode mDispatchMode;
+    private MethodMetrics mMetrics = new MethodMetrics();
 
     public InvocationHandlerImpl(Object target) {
+        this(target, DispatchMode.REFLECTION);
+    }
+
+    public InvocationHandlerImpl(Object target, DispatchMode dispatchMode) {
         mTarget = target;
+        mDispatchMode = dispatchMode;
+    }
+
+    /**
+     * Latency of every call made through this handler, including calls that threw.
+     */
+    public MethodMetrics getMetrics() {
+        return mMetrics;
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        long start = System.currentTimeMillis();
-        Object obj = method.invoke(mTarget, args);
-        System.out.println(method.getName() + " cost time is:" + (System.currentTimeMillis() - start));
-        return obj;
+        LatencyHistogram histogram = mMetrics.histogram(method);
+        long start = System.nanoTime();
+        try {
+            return dispatch(method, args);
+        } finally {
+            histogram.recordSince(start);
+        }
+    }
+
+    private Object dispatch(Method method, Object[] args) throws Throwable {
+        if (mDispatchMode == DispatchMode.METHOD_HANDLE) {
+            return MethodInvokers.get(method).invoke(mTarget, args);
+        }
+        return method.invoke(mTarget, args);
     }
 
 }
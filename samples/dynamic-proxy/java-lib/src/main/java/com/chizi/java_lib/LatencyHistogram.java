@@ -0,0 +1,137 @@
+package com.chizi.java_lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of nanosecond latencies, laid out like an HDR histogram: every power of two
+ * is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets, so any recorded value is kept within
+ * about 3% of its real value, from 1 ns up to {@link Long#MAX_VALUE}.
+ * <p>
+ * {@link #record(long)} only does a few atomic increments on preallocated counters and never
+ * allocates. {@link #snapshot()} may run at any time while other threads keep recording.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mMax = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mCounts.incrementAndGet(indexOf(nanos));
+        long max = mMax.get();
+        while (nanos > max && !mMax.compareAndSet(max, nanos)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}, a value taken from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        long max = mMax.get();
+        return new Snapshot(total,
+                valueAt(counts, total, 0.5, max),
+                valueAt(counts, total, 0.99, max),
+                valueAt(counts, total, 0.999, max),
+                max);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * The largest value that lands in the bucket at {@code index}.
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    private static long valueAt(long[] counts, long total, double percentile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * A point-in-time view of a {@link LatencyHistogram}, all values in nanoseconds.
+     */
+    public static final class Snapshot {
+
+        private final long mCount;
+        private final long mP50;
+        private final long mP99;
+        private final long mP999;
+        private final long mMax;
+
+        Snapshot(long count, long p50, long p99, long p999, long max) {
+            mCount = count;
+            mP50 = p50;
+            mP99 = p99;
+            mP999 = p999;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getP50() {
+            return mP50;
+        }
+
+        public long getP99() {
+            return mP99;
+        }
+
+        public long getP999() {
+            return mP999;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + mCount + ", p50=" + mP50 + "ns, p99=" + mP99 + "ns, p999=" + mP999 + "ns, max=" + mMax + "ns";
+        }
+    }
+
+}
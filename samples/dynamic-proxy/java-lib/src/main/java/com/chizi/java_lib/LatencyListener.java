@@ -0,0 +1,32 @@
+package com.chizi.java_lib;
+
+import com.chizi.annotation.InvocationListener;
+
+import java.lang.reflect.Method;
+
+/**
+ * An {@link InvocationListener} recording call latency into {@link MethodMetrics}. Histograms are
+ * resolved once up front and then looked up by method index.
+ */
+public class LatencyListener implements InvocationListener {
+
+    private final LatencyHistogram[] mHistograms;
+
+    public LatencyListener(MethodMetrics metrics, Method[] methods) {
+        mHistograms = new LatencyHistogram[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            mHistograms[i] = metrics.histogram(methods[i]);
+        }
+    }
+
+    @Override
+    public long onEnter(int methodIndex) {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void onExit(int methodIndex, long token, Throwable error) {
+        mHistograms[methodIndex].recordSince(token);
+    }
+
+}
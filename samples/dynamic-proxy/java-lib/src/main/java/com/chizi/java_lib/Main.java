@@ -1,20 +1,69 @@
 package com.chizi.java_lib;
 
-import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
     public static void main(String[] args) {
         Operate target = new OperateImpl();
-        InvocationHandler handler = new InvocationHandlerImpl(target);
+        InvocationHandlerImpl handler = new InvocationHandlerImpl(target);
         Operate proxy = (Operate) Proxy.newProxyInstance(Operate.class.getClassLoader(), new Class[]{Operate.class}, handler);
 
         proxy.method1();
         proxy.method2();
         proxy.method3();
 
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : handler.getMetrics().snapshot().entrySet()) {
+            System.out.println(entry.getKey() + " " + entry.getValue());
+        }
+
+        // the proxy class of Operate is compiled ahead of time by the apt ProxyProcessor
+        Class<?>[] interfaces = {Operate.class};
+        MethodMetrics metrics = new MethodMetrics();
+        Operate generated = GeneratedProxies.newProxyInstance(Operate.class.getClassLoader(), interfaces, target,
+                new LatencyListener(metrics, GeneratedProxies.getProxyMethods(Operate.class.getClassLoader(), interfaces)));
+        System.out.println(generated.getClass().getName() + " add(1, 2) = " + generated.add(1, 2));
+        System.out.println(metrics.snapshot());
+
+        Operate intercepted = new InterceptorHandler.Builder()
+                .addInterceptor(new TimingInterceptor(metrics))
+                .addInterceptor(new TracingInterceptor(new TracingInterceptor.Tracer() {
+                    @Override
+                    public void onSpan(Method method, int depth, long startNanos, long durationNanos, Throwable error) {
+                        System.out.println("trace " + method.getName() + " depth=" + depth + " took " + durationNanos + "ns");
+                    }
+                }))
+                .build(Operate.class, target);
+        intercepted.add(3, 4);
+        System.out.println(metrics.snapshot());
+
+        // the three calls overlap instead of adding up
+        AsyncOperate async = new AsyncInvocationHandler.Builder()
+                .maxConcurrency(16)
+                .build(AsyncOperate.class, Operate.class, target);
+        long start = System.nanoTime();
+        CompletableFuture.allOf(async.method1(), async.method2(), async.method3()).join();
+        System.out.println("async method1..3 cost time is:" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+
+        // a burst of small calls reaches the target as a few squareAll calls
+        BatchOperate batch = new BatchingInvocationHandler.Builder()
+                .build(BatchOperate.class, Operate.class, target);
+        List<CompletableFuture<Integer>> squares = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            squares.add(batch.square(i));
+        }
+        System.out.println("square(999) = " + squares.get(999).join() + ", " + BatchingInvocationHandler.stats(batch));
+
         boolean success = ProxyUtils.saveProxyClass("$Proxy0.class", proxy.getClass().getSimpleName(), proxy.getClass().getInterfaces());
+        if (!success) {
+            success = ProxyUtils.saveGeneratedProxyClass("$GeneratedProxy0.class", "com.chizi.java_lib.$GeneratedProxy0", interfaces);
+        }
         if (success) {
             System.out.println("save proxy class file success");
         }
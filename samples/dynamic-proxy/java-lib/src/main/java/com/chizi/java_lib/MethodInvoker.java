@@ -0,0 +1,14 @@
+package com.chizi.java_lib;
+
+/**
+ * Calls one resolved interface method on a target object.
+ */
+public interface MethodInvoker {
+
+    /**
+     * Invokes the method on target. Exceptions thrown by the target are rethrown as is,
+     * never wrapped in an {@link java.lang.reflect.InvocationTargetException}.
+     */
+    Object invoke(Object target, Object[] args) throws Throwable;
+
+}
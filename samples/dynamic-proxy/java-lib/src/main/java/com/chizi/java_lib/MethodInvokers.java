@@ -0,0 +1,213 @@
+package com.chizi.java_lib;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves each proxied {@link Method} once into a {@link MethodInvoker}, so later calls skip the
+ * access checks and the argument array handling done by {@link Method#invoke}.
+ * <p>
+ * Methods with up to three parameters are linked through {@link LambdaMetafactory}, which spins a
+ * small class calling the method directly. Wider methods use a spreading {@link MethodHandle}, and
+ * methods that cannot be looked up from here fall back to plain reflection.
+ * <p>
+ * The cache is keyed by the interface method handed to the {@link java.lang.reflect.InvocationHandler},
+ * which already identifies both the interface and the method.
+ */
+public final class MethodInvokers {
+
+    private static final int MAX_LINKED_ARITY = 3;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ConcurrentMap<Method, MethodInvoker> sInvokers = new ConcurrentHashMap<>();
+
+    private MethodInvokers() {
+    }
+
+    public static MethodInvoker get(Method method) {
+        MethodInvoker invoker = sInvokers.get(method);
+        if (invoker == null) {
+            invoker = create(method);
+            MethodInvoker previous = sInvokers.putIfAbsent(method, invoker);
+            if (previous != null) {
+                invoker = previous;
+            }
+        }
+        return invoker;
+    }
+
+    /**
+     * The plain reflective path, kept for comparison with the cached one.
+     */
+    public static MethodInvoker reflective(final Method method) {
+        return new MethodInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) throws Throwable {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+    }
+
+    private static MethodInvoker create(Method method) {
+        MethodHandle handle;
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            // not accessible from here, e.g. blocked by a security manager
+            return reflective(method);
+        }
+        int arity = method.getParameterTypes().length;
+        if (arity <= MAX_LINKED_ARITY) {
+            try {
+                return link(handle, arity, method.getReturnType() == void.class);
+            } catch (Throwable t) {
+                // the generated class could not see the method, use the handle directly
+            }
+        }
+        final MethodHandle spreader = handle
+                .asType(handle.type().generic())
+                .asSpreader(Object[].class, arity);
+        return new MethodInvoker() {
+            @Override
+            public Object invoke(Object target, Object[] args) throws Throwable {
+                return (Object) spreader.invokeExact(target, args);
+            }
+        };
+    }
+
+    private static MethodInvoker link(MethodHandle handle, int arity, boolean isVoid) throws Throwable {
+        MethodType instantiatedType = handle.type().wrap();
+        MethodType samType = MethodType.genericMethodType(arity + 1);
+        if (isVoid) {
+            instantiatedType = instantiatedType.changeReturnType(void.class);
+            samType = samType.changeReturnType(void.class);
+        }
+        switch (arity) {
+            case 0:
+                if (isVoid) {
+                    final Run0 run = (Run0) function(Run0.class, "run", samType, handle, instantiatedType);
+                    return new MethodInvoker() {
+                        @Override
+                        public Object invoke(Object target, Object[] args) throws Throwable {
+                            run.run(target);
+                            return null;
+                        }
+                    };
+                }
+                final Call0 call0 = (Call0) function(Call0.class, "call", samType, handle, instantiatedType);
+                return new MethodInvoker() {
+                    @Override
+                    public Object invoke(Object target, Object[] args) throws Throwable {
+                        return call0.call(target);
+                    }
+                };
+            case 1:
+                if (isVoid) {
+                    final Run1 run = (Run1) function(Run1.class, "run", samType, handle, instantiatedType);
+                    return new MethodInvoker() {
+                        @Override
+                        public Object invoke(Object target, Object[] args) throws Throwable {
+                            run.run(target, args[0]);
+                            return null;
+                        }
+                    };
+                }
+                final Call1 call1 = (Call1) function(Call1.class, "call", samType, handle, instantiatedType);
+                return new MethodInvoker() {
+                    @Override
+                    public Object invoke(Object target, Object[] args) throws Throwable {
+                        return call1.call(target, args[0]);
+                    }
+                };
+            case 2:
+                if (isVoid) {
+                    final Run2 run = (Run2) function(Run2.class, "run", samType, handle, instantiatedType);
+                    return new MethodInvoker() {
+                        @Override
+                        public Object invoke(Object target, Object[] args) throws Throwable {
+                            run.run(target, args[0], args[1]);
+                            return null;
+                        }
+                    };
+                }
+                final Call2 call2 = (Call2) function(Call2.class, "call", samType, handle, instantiatedType);
+                return new MethodInvoker() {
+                    @Override
+                    public Object invoke(Object target, Object[] args) throws Throwable {
+                        return call2.call(target, args[0], args[1]);
+                    }
+                };
+            default:
+                if (isVoid) {
+                    final Run3 run = (Run3) function(Run3.class, "run", samType, handle, instantiatedType);
+                    return new MethodInvoker() {
+                        @Override
+                        public Object invoke(Object target, Object[] args) throws Throwable {
+                            run.run(target, args[0], args[1], args[2]);
+                            return null;
+                        }
+                    };
+                }
+                final Call3 call3 = (Call3) function(Call3.class, "call", samType, handle, instantiatedType);
+                return new MethodInvoker() {
+                    @Override
+                    public Object invoke(Object target, Object[] args) throws Throwable {
+                        return call3.call(target, args[0], args[1], args[2]);
+                    }
+                };
+        }
+    }
+
+    private static Object function(Class<?> functionType, String name, MethodType samType,
+                                   MethodHandle handle, MethodType instantiatedType) throws Throwable {
+        return LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(functionType),
+                samType, handle, instantiatedType).getTarget().invoke();
+    }
+
+    interface Call0 {
+        Object call(Object target);
+    }
+
+    interface Call1 {
+        Object call(Object target, Object a0);
+    }
+
+    interface Call2 {
+        Object call(Object target, Object a0, Object a1);
+    }
+
+    interface Call3 {
+        Object call(Object target, Object a0, Object a1, Object a2);
+    }
+
+    interface Run0 {
+        void run(Object target);
+    }
+
+    interface Run1 {
+        void run(Object target, Object a0);
+    }
+
+    interface Run2 {
+        void run(Object target, Object a0, Object a1);
+    }
+
+    interface Run3 {
+        void run(Object target, Object a0, Object a1, Object a2);
+    }
+
+}
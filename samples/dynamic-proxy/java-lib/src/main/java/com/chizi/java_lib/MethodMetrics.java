@@ -0,0 +1,57 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link LatencyHistogram} per proxied method. Looking up the histogram of a method that was
+ * already seen is a plain map read, so the recording path stays allocation-free.
+ */
+public final class MethodMetrics {
+
+    private final ConcurrentMap<Method, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+
+    public LatencyHistogram histogram(Method method) {
+        LatencyHistogram histogram = mHistograms.get(method);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram previous = mHistograms.putIfAbsent(method, histogram);
+            if (previous != null) {
+                histogram = previous;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Snapshots every method recorded so far, keyed by {@code Interface.method(params)}. Callers are
+     * never blocked while this runs.
+     */
+    public Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<Method, LatencyHistogram> entry : mHistograms.entrySet()) {
+            snapshots.put(nameOf(entry.getKey()), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    static String nameOf(Method method) {
+        StringBuilder name = new StringBuilder()
+                .append(method.getDeclaringClass().getSimpleName())
+                .append('.')
+                .append(method.getName())
+                .append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                name.append(',');
+            }
+            name.append(parameterTypes[i].getSimpleName());
+        }
+        return name.append(')').toString();
+    }
+
+}
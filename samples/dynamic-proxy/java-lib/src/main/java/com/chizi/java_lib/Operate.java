@@ -1,9 +1,14 @@
 package com.chizi.java_lib;
 
+import com.chizi.annotation.GenerateProxy;
+
+import java.util.List;
+
 /**
  * Created by Chenll on 2018/12/11.
  */
 
+@GenerateProxy
 public interface Operate {
 
     void method1();
@@ -12,4 +17,8 @@ public interface Operate {
 
     void method3();
 
+    int add(int a, int b);
+
+    List<Integer> squareAll(List<Integer> values);
+
 }
@@ -1,5 +1,8 @@
 package com.chizi.java_lib;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by Chenll on 2018/12/11.
  */
@@ -12,7 +15,7 @@ class OperateImpl implements Operate {
         try {
             Thread.sleep(110);
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -22,7 +25,7 @@ class OperateImpl implements Operate {
         try {
             Thread.sleep(120);
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -32,8 +35,22 @@ class OperateImpl implements Operate {
         try {
             Thread.sleep(130);
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int add(int a, int b) {
+        return a + b;
+    }
+
+    @Override
+    public List<Integer> squareAll(List<Integer> values) {
+        List<Integer> squares = new ArrayList<>(values.size());
+        for (Integer value : values) {
+            squares.add(value * value);
         }
+        return squares;
     }
 
 }
@@ -0,0 +1,299 @@
+package com.chizi.java_lib;
+
+import com.chizi.annotation.InvocationListener;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the bytes of a proxy class implementing a set of interfaces. Unlike the classes made by
+ * {@link java.lang.reflect.Proxy}, every generated method calls the target directly:
+ * <pre>
+ * public int add(int a, int b) {
+ *     long token = listener.onEnter(3);
+ *     int result;
+ *     try {
+ *         result = ((Operate) target).add(a, b);
+ *     } catch (Throwable e) {
+ *         listener.onExit(3, token, e);
+ *         throw e;
+ *     }
+ *     listener.onExit(3, token, null);
+ *     return result;
+ * }
+ * </pre>
+ * so there is no {@link Method} lookup and no boxing of arguments or results.
+ */
+public final class ProxyClassGenerator {
+
+    static final String TARGET_FIELD = "target";
+    static final String LISTENER_FIELD = "listener";
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String LISTENER = Type.getInternalName(InvocationListener.class);
+    private static final String LISTENER_DESCRIPTOR = Type.getDescriptor(InvocationListener.class);
+    private static final String CONSTRUCTOR_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.getType(InvocationListener.class));
+
+    private static final Method[] OBJECT_METHODS;
+
+    static {
+        try {
+            OBJECT_METHODS = new Method[]{
+                    Object.class.getMethod("equals", Object.class),
+                    Object.class.getMethod("hashCode"),
+                    Object.class.getMethod("toString")};
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private ProxyClassGenerator() {
+    }
+
+    /**
+     * The methods a proxy of {@code interfaces} implements, in the order used for method indexes.
+     * Methods with the same name and parameters in several interfaces appear once, with the most
+     * specific of their return types, as with {@link java.lang.reflect.Proxy}; the others are
+     * implemented by bridge methods. {@code equals}, {@code hashCode} and {@code toString} are
+     * forwarded too; unless an interface declares them, they come last.
+     */
+    public static Method[] getProxyMethods(Class<?>... interfaces) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Class<?> intf : interfaces) {
+            if (!intf.isInterface() || !Modifier.isPublic(intf.getModifiers())) {
+                throw new IllegalArgumentException(intf.getName() + " is not a public interface");
+            }
+            for (Method method : intf.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                String signature = getSignature(method);
+                Method existing = methods.get(signature);
+                if (existing == null || existing.getReturnType() != method.getReturnType()
+                        && existing.getReturnType().isAssignableFrom(method.getReturnType())) {
+                    methods.put(signature, method);
+                } else if (!method.getReturnType().isAssignableFrom(existing.getReturnType())) {
+                    throw new IllegalArgumentException("conflicting return types for " + method.getName());
+                }
+            }
+        }
+        for (Method method : OBJECT_METHODS) {
+            String signature = getSignature(method);
+            if (!methods.containsKey(signature)) {
+                methods.put(signature, method);
+            }
+        }
+        List<Method> result = new ArrayList<>(methods.values());
+        return result.toArray(new Method[result.size()]);
+    }
+
+    /**
+     * The name and parameter types of the method, without its return type.
+     */
+    private static String getSignature(Method method) {
+        String descriptor = Type.getMethodDescriptor(method);
+        return method.getName() + descriptor.substring(0, descriptor.indexOf(')') + 1);
+    }
+
+    /**
+     * Generates a class with a public {@code (Object target, InvocationListener listener)}
+     * constructor.
+     *
+     * @param className binary name of the class, e.g. {@code com.chizi.java_lib.$GeneratedProxy0}
+     */
+    public static byte[] generate(String className, Class<?>[] interfaces) {
+        return generate(className, interfaces, getProxyMethods(interfaces));
+    }
+
+    /**
+     * Same as {@link #generate(String, Class[])}, with methods already listed by
+     * {@link #getProxyMethods}; their order decides the method indexes.
+     */
+    public static byte[] generate(String className, Class<?>[] interfaces, Method[] methods) {
+        String internalName = className.replace('.', '/');
+        String[] interfaceNames = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceNames[i] = Type.getInternalName(interfaces[i]);
+        }
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // locals only ever merge with themselves or with Throwable, never with proxied types
+                return OBJECT;
+            }
+        };
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                internalName, null, OBJECT, interfaceNames);
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, TARGET_FIELD,
+                Type.getDescriptor(Object.class), null, null).visitEnd();
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, LISTENER_FIELD,
+                LISTENER_DESCRIPTOR, null, null).visitEnd();
+
+        writeConstructor(cw, internalName);
+        Map<String, Method> bySignature = new LinkedHashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            writeMethod(cw, internalName, methods[i], i);
+            bySignature.put(getSignature(methods[i]), methods[i]);
+        }
+        // Inherited methods with a less specific return type still need an implementation.
+        Set<String> bridged = new HashSet<>();
+        for (Class<?> intf : interfaces) {
+            for (Method method : intf.getMethods()) {
+                Method implemented = bySignature.get(getSignature(method));
+                String descriptor = Type.getMethodDescriptor(method);
+                if (implemented != null && !descriptor.equals(Type.getMethodDescriptor(implemented))
+                        && bridged.add(method.getName() + descriptor)) {
+                    writeBridge(cw, internalName, implemented, descriptor);
+                }
+            }
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void writeConstructor(ClassWriter cw, String internalName) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, TARGET_FIELD, Type.getDescriptor(Object.class));
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, LISTENER_FIELD, LISTENER_DESCRIPTOR);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void writeMethod(ClassWriter cw, String internalName, Method method, int index) {
+        Type[] argumentTypes = Type.getArgumentTypes(method);
+        Type returnType = Type.getReturnType(method);
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] exceptions = new String[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+        }
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method.getName(),
+                Type.getMethodDescriptor(method), null, exceptions);
+        mv.visitCode();
+
+        int tokenSlot = 1;
+        for (Type argumentType : argumentTypes) {
+            tokenSlot += argumentType.getSize();
+        }
+        int resultSlot = tokenSlot + 2;
+        int errorSlot = resultSlot + returnType.getSize();
+
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+
+        // long token = listener.onEnter(index);
+        loadListener(mv, internalName);
+        pushInt(mv, index);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "onEnter", "(I)J", true);
+        mv.visitVarInsn(Opcodes.LSTORE, tokenSlot);
+
+        // result = ((Interface) target).method(args);
+        mv.visitLabel(tryStart);
+        boolean isInterface = method.getDeclaringClass().isInterface();
+        String owner = Type.getInternalName(method.getDeclaringClass());
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, internalName, TARGET_FIELD, Type.getDescriptor(Object.class));
+        if (isInterface) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        }
+        int slot = 1;
+        for (Type argumentType : argumentTypes) {
+            mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        mv.visitMethodInsn(isInterface ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL, owner, method.getName(),
+                Type.getMethodDescriptor(method), isInterface);
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ISTORE), resultSlot);
+        }
+        mv.visitLabel(tryEnd);
+
+        // listener.onExit(index, token, null); return result;
+        loadListener(mv, internalName);
+        pushInt(mv, index);
+        mv.visitVarInsn(Opcodes.LLOAD, tokenSlot);
+        mv.visitInsn(Opcodes.ACONST_NULL);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "onExit", "(IJLjava/lang/Throwable;)V", true);
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(Opcodes.ILOAD), resultSlot);
+        }
+        mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+        // catch (Throwable e) { listener.onExit(index, token, e); throw e; }
+        mv.visitLabel(handler);
+        mv.visitVarInsn(Opcodes.ASTORE, errorSlot);
+        loadListener(mv, internalName);
+        pushInt(mv, index);
+        mv.visitVarInsn(Opcodes.LLOAD, tokenSlot);
+        mv.visitVarInsn(Opcodes.ALOAD, errorSlot);
+        mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, LISTENER, "onExit", "(IJLjava/lang/Throwable;)V", true);
+        mv.visitVarInsn(Opcodes.ALOAD, errorSlot);
+        mv.visitInsn(Opcodes.ATHROW);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Calls the implemented method, which returns a subtype of what the bridge returns.
+     */
+    private static void writeBridge(ClassWriter cw, String internalName, Method implemented, String descriptor) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_BRIDGE
+                | Opcodes.ACC_SYNTHETIC, implemented.getName(), descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        int slot = 1;
+        for (Type argumentType : Type.getArgumentTypes(descriptor)) {
+            mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, internalName, implemented.getName(),
+                Type.getMethodDescriptor(implemented), false);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void loadListener(MethodVisitor mv, String internalName) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, internalName, LISTENER_FIELD, LISTENER_DESCRIPTOR);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+}
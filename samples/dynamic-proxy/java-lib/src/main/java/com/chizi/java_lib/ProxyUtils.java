@@ -2,18 +2,48 @@ package com.chizi.java_lib;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-
-import sun.misc.ProxyGenerator;
+import java.lang.reflect.Method;
 
 public class ProxyUtils {
 
+    private static final String JDK8_PROXY_GENERATOR = "sun.misc.ProxyGenerator";
+
+    /**
+     * Saves the class file {@link java.lang.reflect.Proxy} generates for {@code interfaces}.
+     * This needs {@code sun.misc.ProxyGenerator}, which is gone since JDK 9; on newer JDKs this
+     * returns false, use {@link #saveGeneratedProxyClass} or run with
+     * {@code -Djdk.proxy.ProxyGenerator.saveGeneratedFiles=true} instead.
+     */
     public static boolean saveProxyClass(String path, String proxyClassName, Class[] interfaces) {
         if (proxyClassName == null || path == null) {
             return false;
         }
 
         // get byte of proxy class
-        byte[] classFile = ProxyGenerator.generateProxyClass(proxyClassName, interfaces);
+        byte[] classFile;
+        try {
+            Method generateProxyClass = Class.forName(JDK8_PROXY_GENERATOR)
+                    .getMethod("generateProxyClass", String.class, Class[].class);
+            classFile = (byte[]) generateProxyClass.invoke(null, proxyClassName, interfaces);
+        } catch (Exception e) {
+            System.out.println(JDK8_PROXY_GENERATOR + " is not available on this JDK");
+            return false;
+        }
+        return write(path, classFile);
+    }
+
+    /**
+     * Saves the class file {@link GeneratedProxies} would define for {@code interfaces}. Works on
+     * any JDK.
+     */
+    public static boolean saveGeneratedProxyClass(String path, String proxyClassName, Class[] interfaces) {
+        if (proxyClassName == null || path == null) {
+            return false;
+        }
+        return write(path, ProxyClassGenerator.generate(proxyClassName, interfaces));
+    }
+
+    private static boolean write(String path, byte[] classFile) {
         FileOutputStream out = null;
         try {
             out = new FileOutputStream(path);
@@ -24,11 +54,13 @@ public class ProxyUtils {
             e.printStackTrace();
         } finally {
             try {
-                out.close();
+                if (out != null) {
+                    out.close();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
         return false;
     }
-}
\ No newline at end of file
+}
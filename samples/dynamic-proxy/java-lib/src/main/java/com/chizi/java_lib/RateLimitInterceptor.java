@@ -0,0 +1,42 @@
+package com.chizi.java_lib;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets at most {@code permitsPerSecond} calls through, evenly spaced. A caller over the limit is
+ * parked until its slot comes up. Slots are handed out with a single compare-and-set, so there is
+ * no lock and no allocation per call.
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private final long mIntervalNanos;
+    private final AtomicLong mNextSlot = new AtomicLong(System.nanoTime());
+
+    public RateLimitInterceptor(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond <= 0");
+        }
+        mIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    @Override
+    public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+        long now = System.nanoTime();
+        long slot;
+        while (true) {
+            long next = mNextSlot.get();
+            // a limiter idle for a while does not save up a burst
+            slot = next - now < 0 ? now : next;
+            if (mNextSlot.compareAndSet(next, slot + mIntervalNanos)) {
+                break;
+            }
+        }
+        long waitNanos = slot - now;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return chain.proceed(target, args);
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.chizi.java_lib;
+
+/**
+ * Calls the target again when it throws {@code retryOn}, up to {@code maxAttempts} calls in total,
+ * sleeping {@code backoffMillis} times the attempt number in between.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private final int mMaxAttempts;
+    private final long mBackoffMillis;
+    private final Class<? extends Throwable> mRetryOn;
+
+    public RetryInterceptor(int maxAttempts, long backoffMillis, Class<? extends Throwable> retryOn) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts < 1");
+        }
+        mMaxAttempts = maxAttempts;
+        mBackoffMillis = backoffMillis;
+        mRetryOn = retryOn;
+    }
+
+    @Override
+    public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return chain.proceed(target, args);
+            } catch (Throwable e) {
+                if (attempt >= mMaxAttempts || !mRetryOn.isInstance(e)) {
+                    throw e;
+                }
+                if (mBackoffMillis > 0) {
+                    Thread.sleep(mBackoffMillis * attempt);
+                }
+            }
+        }
+    }
+
+}
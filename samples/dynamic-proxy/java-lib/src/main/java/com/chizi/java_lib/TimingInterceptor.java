@@ -0,0 +1,44 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.Method;
+
+/**
+ * Records the latency of every call into {@link MethodMetrics}, the histogram of each method is
+ * resolved once when the chain is linked.
+ */
+public class TimingInterceptor implements Interceptor {
+
+    private final MethodMetrics mMetrics;
+
+    public TimingInterceptor(MethodMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    @Override
+    public Interceptor link(Method method) {
+        final LatencyHistogram histogram = mMetrics.histogram(method);
+        return new Interceptor() {
+            @Override
+            public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+                long start = System.nanoTime();
+                try {
+                    return chain.proceed(target, args);
+                } finally {
+                    histogram.recordSince(start);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+        LatencyHistogram histogram = mMetrics.histogram(chain.method());
+        long start = System.nanoTime();
+        try {
+            return chain.proceed(target, args);
+        } finally {
+            histogram.recordSince(start);
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.chizi.java_lib;
+
+import java.lang.reflect.Method;
+
+/**
+ * Reports every call as a span to a {@link Tracer}, with the nesting depth of proxied calls on the
+ * current thread.
+ */
+public class TracingInterceptor implements Interceptor {
+
+    public interface Tracer {
+
+        void onSpan(Method method, int depth, long startNanos, long durationNanos, Throwable error);
+    }
+
+    private static final ThreadLocal<int[]> sDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private final Tracer mTracer;
+
+    public TracingInterceptor(Tracer tracer) {
+        mTracer = tracer;
+    }
+
+    @Override
+    public Object intercept(Chain chain, Object target, Object[] args) throws Throwable {
+        int[] depth = sDepth.get();
+        int current = depth[0]++;
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return chain.proceed(target, args);
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            depth[0] = current;
+            mTracer.onSpan(chain.method(), current, start, System.nanoTime() - start, error);
+        }
+    }
+
+}
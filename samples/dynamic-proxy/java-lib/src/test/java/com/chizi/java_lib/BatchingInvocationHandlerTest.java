@@ -0,0 +1,162 @@
+package com.chizi.java_lib;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchingInvocationHandlerTest {
+
+    public interface Squares {
+
+        @Batched(bulkMethod = "squareAll", maxSize = 3, maxDelayMillis = 60_000)
+        CompletableFuture<Integer> square(Integer x);
+
+        @Batched(bulkMethod = "cubeAll", maxDelayMillis = 20)
+        CompletableFuture<Integer> cube(Integer x);
+
+        @Batched(bulkMethod = "failAll", maxSize = 2)
+        CompletableFuture<Integer> fail(Integer x);
+
+        @Batched(bulkMethod = "dropAll", maxSize = 2)
+        CompletableFuture<Integer> drop(Integer x);
+
+        int negate(int x);
+    }
+
+    public interface BulkSquares {
+
+        List<Integer> squareAll(List<Integer> xs);
+
+        List<Integer> cubeAll(List<Integer> xs);
+
+        List<Integer> failAll(List<Integer> xs);
+
+        List<Integer> dropAll(List<Integer> xs);
+
+        int negate(int x);
+    }
+
+    private final RecordingSquares mTarget = new RecordingSquares();
+    private final Squares mProxy = new BatchingInvocationHandler.Builder()
+            // bulk calls run on the calling thread, so batches complete before add returns
+            .executor(Runnable::run)
+            .build(Squares.class, BulkSquares.class, mTarget);
+
+    @Test
+    public void sendsABatchOnceItIsFull() {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            futures.add(mProxy.square(i));
+        }
+
+        assertEquals(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5)), mTarget.mBatches);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(Integer.valueOf(i * i), futures.get(i).getNow(null));
+        }
+        assertFalse(futures.get(6).isDone());
+        BatchingInvocationHandler.Stats stats = BatchingInvocationHandler.stats(mProxy).get("Squares.square(Integer)");
+        assertEquals(2, stats.getBatchCount());
+        assertEquals(6, stats.getCallCount());
+        assertEquals(3, stats.getMaxBatchSize());
+    }
+
+    @Test
+    public void sendsAPartialBatchAfterTheDelay() throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<Integer> first = mProxy.cube(2);
+        CompletableFuture<Integer> second = mProxy.cube(3);
+        assertFalse(first.isDone());
+
+        assertEquals(Integer.valueOf(8), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(27), second.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(Collections.singletonList(Arrays.asList(2, 3)), mTarget.mBatches);
+    }
+
+    @Test
+    public void failsEveryCallOfAFailedBatch() {
+        CompletableFuture<Integer> first = mProxy.fail(1);
+        CompletableFuture<Integer> second = mProxy.fail(2);
+
+        assertSame(mTarget.mError, causeOf(first));
+        assertSame(mTarget.mError, causeOf(second));
+    }
+
+    @Test
+    public void failsEveryCallWhenResultsAreMissing() {
+        CompletableFuture<Integer> first = mProxy.drop(1);
+        CompletableFuture<Integer> second = mProxy.drop(2);
+
+        assertTrue(causeOf(first) instanceof IllegalStateException);
+        assertSame(causeOf(first), causeOf(second));
+    }
+
+    @Test
+    public void callsOtherMethodsDirectly() {
+        assertEquals(-3, mProxy.negate(3));
+        assertTrue(mTarget.mBatches.isEmpty());
+    }
+
+    private static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.getNow(null);
+            fail("not failed");
+            return null;
+        } catch (Exception e) {
+            return e.getCause();
+        }
+    }
+
+    private static final class RecordingSquares implements BulkSquares {
+
+        final List<List<Integer>> mBatches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        final RuntimeException mError = new IllegalArgumentException("boom");
+
+        @Override
+        public List<Integer> squareAll(List<Integer> xs) {
+            mBatches.add(new ArrayList<>(xs));
+            List<Integer> squares = new ArrayList<>();
+            for (Integer x : xs) {
+                squares.add(x * x);
+            }
+            return squares;
+        }
+
+        @Override
+        public List<Integer> cubeAll(List<Integer> xs) {
+            mBatches.add(new ArrayList<>(xs));
+            List<Integer> cubes = new ArrayList<>();
+            for (Integer x : xs) {
+                cubes.add(x * x * x);
+            }
+            return cubes;
+        }
+
+        @Override
+        public List<Integer> failAll(List<Integer> xs) {
+            throw mError;
+        }
+
+        @Override
+        public List<Integer> dropAll(List<Integer> xs) {
+            return xs.subList(1, xs.size());
+        }
+
+        @Override
+        public int negate(int x) {
+            return -x;
+        }
+    }
+
+}
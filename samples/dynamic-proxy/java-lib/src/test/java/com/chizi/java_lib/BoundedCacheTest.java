@@ -0,0 +1,103 @@
+package com.chizi.java_lib;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void countsHitsAndMisses() {
+        BoundedCache<String, String> cache = new BoundedCache<>(16, 0);
+        cache.put("a", "1");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void peekDoesNotCount() {
+        BoundedCache<String, String> cache = new BoundedCache<>(16, 0);
+        cache.put("a", "1");
+
+        assertEquals("1", cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertEquals(0, cache.hitCount());
+        assertEquals(0, cache.missCount());
+    }
+
+    @Test
+    public void replacesEntriesAskedForAsOften() {
+        BoundedCache<String, String> cache = new BoundedCache<>(1, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        assertNull(cache.peek("a"));
+        assertEquals("2", cache.peek("b"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void turnsAwayKeysAskedForLessOften() {
+        BoundedCache<String, String> cache = new BoundedCache<>(1, 0);
+        cache.put("a", "1");
+        for (int i = 0; i < 3; i++) {
+            cache.get("a");
+        }
+        cache.put("b", "2");
+
+        assertEquals("1", cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void keepsPopularEntriesThroughAScan() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 0);
+        cache.put("hot", "1");
+        for (int i = 0; i < 5; i++) {
+            cache.get("hot");
+        }
+        for (int i = 0; i < 100; i++) {
+            String key = "cold" + i;
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+
+        assertEquals("1", cache.get("hot"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void expiresEntriesAfterWrite() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(16, TimeUnit.MILLISECONDS.toNanos(20));
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+
+        Thread.sleep(50);
+
+        assertNull(cache.peek("a"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void writingAgainRestartsExpiry() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(16, TimeUnit.MILLISECONDS.toNanos(100));
+        cache.put("a", "1");
+        Thread.sleep(60);
+        cache.put("a", "2");
+        Thread.sleep(60);
+
+        assertEquals("2", cache.get("a"));
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.chizi.java_lib;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CachingInterceptorTest {
+
+    public interface Repository {
+
+        @Cached
+        String load(String key);
+
+        @Cached
+        String loadAll(String key, int page);
+
+        String uncached(String key);
+    }
+
+    private final CachingInterceptor mCaching = new CachingInterceptor();
+    private final CountingRepository mTarget = new CountingRepository();
+    private final Repository mProxy = new InterceptorHandler.Builder()
+            .addInterceptor(mCaching)
+            .build(Repository.class, mTarget);
+
+    @Test
+    public void servesRepeatedCallsFromTheCache() {
+        assertEquals("a", mProxy.load("a"));
+        assertEquals("a", mProxy.load("a"));
+        assertEquals("a1", mProxy.loadAll("a", 1));
+        assertEquals("a1", mProxy.loadAll("a", 1));
+        assertEquals("a2", mProxy.loadAll("a", 2));
+
+        assertEquals(3, mTarget.mCalls.get());
+        CachingInterceptor.Stats stats = mCaching.stats().get("Repository.load(String)");
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+    }
+
+    @Test
+    public void cachesNullResults() {
+        assertNull(mProxy.load(null));
+        assertNull(mProxy.load(null));
+
+        assertEquals(1, mTarget.mCalls.get());
+    }
+
+    @Test
+    public void leavesOtherMethodsAlone() {
+        mProxy.uncached("a");
+        mProxy.uncached("a");
+
+        assertEquals(2, mTarget.mCalls.get());
+        assertEquals(2, mCaching.stats().size());
+    }
+
+    @Test
+    public void coalescesConcurrentMisses() throws Exception {
+        mTarget.mRelease = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> mProxy.load("a"));
+            Future<String> second = executor.submit(() -> mProxy.load("a"));
+            awaitCoalesced(1);
+            mTarget.mRelease.countDown();
+
+            assertEquals("a", first.get(5, TimeUnit.SECONDS));
+            assertEquals("a", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, mTarget.mCalls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failsCoalescedCallsWithTheLoadError() throws Exception {
+        mTarget.mRelease = new CountDownLatch(1);
+        mTarget.mError = new IllegalStateException("boom");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> mProxy.load("a"));
+            Future<String> second = executor.submit(() -> mProxy.load("a"));
+            awaitCoalesced(1);
+            mTarget.mRelease.countDown();
+
+            assertFailsWith(mTarget.mError, first);
+            assertFailsWith(mTarget.mError, second);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        mTarget.mError = null;
+        assertEquals("a", mProxy.load("a"));
+        assertEquals(2, mTarget.mCalls.get());
+    }
+
+    @Test(timeout = 5000)
+    public void reentrantCallsReachTheTarget() {
+        mTarget.mReentrant = mProxy;
+
+        assertEquals("a(a)", mProxy.load("a"));
+        assertEquals("a(a)", mProxy.load("a"));
+        assertEquals(2, mTarget.mCalls.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsASecondProxy() {
+        new InterceptorHandler.Builder()
+                .addInterceptor(mCaching)
+                .build(Repository.class, new CountingRepository());
+    }
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mCaching.stats().get("Repository.load(String)").getCoalescedCount() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("no call waited for the load in flight");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void assertFailsWith(Throwable expected, Future<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(expected, e.getCause());
+        }
+    }
+
+    private static final class CountingRepository implements Repository {
+
+        final AtomicInteger mCalls = new AtomicInteger();
+        volatile CountDownLatch mRelease;
+        volatile RuntimeException mError;
+        volatile Repository mReentrant;
+
+        @Override
+        public String load(String key) {
+            mCalls.incrementAndGet();
+            if (mRelease != null) {
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (mError != null) {
+                throw mError;
+            }
+            Repository reentrant = mReentrant;
+            if (reentrant != null) {
+                mReentrant = null;
+                try {
+                    return key + "(" + reentrant.load(key) + ")";
+                } finally {
+                    mReentrant = reentrant;
+                }
+            }
+            return key;
+        }
+
+        @Override
+        public String loadAll(String key, int page) {
+            mCalls.incrementAndGet();
+            return key + page;
+        }
+
+        @Override
+        public String uncached(String key) {
+            mCalls.incrementAndGet();
+            return key;
+        }
+    }
+
+}
@@ -1,11 +1,20 @@
 package com.chizi.okhttp;
 
+import com.chizi.http.HttpClients;
+import com.chizi.http.RequestExecutor;
+
+import java.io.File;
 import java.io.IOException;
 
 import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
 
 /**
  * Created by Chenll on 2018/12/5.
@@ -13,8 +22,26 @@ import okhttp3.Response;
 
 public class GithubService {
 
-    // 1.OkHttpClient
-    private OkHttpClient mOkHttpClient = new OkHttpClient.Builder().build();
+    /**
+     * Reads a response body while it arrives. The source is closed once {@link #read} returns.
+     */
+    public interface BodyReader<T> {
+
+        T read(BufferedSource source) throws IOException;
+    }
+
+    private static final RequestExecutor.Reader<String> STRING = new RequestExecutor.Reader<String>() {
+        @Override
+        public String read(ResponseBody body) throws IOException {
+            return body.string();
+        }
+    };
+
+    private static volatile GithubService sInstance;
+
+    // 1.OkHttpClient, shared by the process to reuse its connections
+    private OkHttpClient mOkHttpClient = HttpClients.get();
+    private RequestExecutor mExecutor = new RequestExecutor(mOkHttpClient);
 
     private GithubService() {
     }
@@ -23,6 +50,22 @@ public class GithubService {
         return new GithubService();
     }
 
+    /**
+     * The service of the process, whose asynchronous calls can join and supersede each other.
+     */
+    public static GithubService getInstance() {
+        GithubService service = sInstance;
+        if (service == null) {
+            synchronized (GithubService.class) {
+                service = sInstance;
+                if (service == null) {
+                    service = sInstance = new GithubService();
+                }
+            }
+        }
+        return service;
+    }
+
     public String getRepos(String url) throws IOException {
         // 2.Request
         Request request = new Request.Builder().url(url).build();
@@ -30,7 +73,75 @@ public class GithubService {
         Call call = mOkHttpClient.newCall(request);
         // 4. Response
         Response response = call.execute();
-        return response.body().string();
+        try {
+            return response.body().string();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Gets the body without blocking, on the shared dispatcher. A call for the URL already in
+     * flight is joined, and any other one still in flight is superseded. The callback runs on an
+     * OkHttp thread.
+     */
+    public RequestExecutor.Subscription getRepos(String url, RequestExecutor.Callback<String> callback) {
+        return mExecutor.enqueue("getRepos", new Request.Builder().url(url).build(), STRING, callback);
+    }
+
+    /**
+     * Hands the body to the reader as it arrives, without a copy of the whole of it on the heap.
+     */
+    public <T> T getRepos(String url, BodyReader<T> reader) throws IOException {
+        Response response = execute(url);
+        try {
+            return reader.read(response.body().source());
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Moves the body into the sink segment by segment, returning its length in bytes. The sink is
+     * not closed.
+     */
+    public long getRepos(String url, Sink sink) throws IOException {
+        Response response = execute(url);
+        try {
+            return response.body().source().readAll(sink);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Writes the body into the file, returning its length in bytes. The file is deleted if the
+     * download fails, rather than left with part of the body.
+     */
+    public long getRepos(String url, File file) throws IOException {
+        BufferedSink sink = Okio.buffer(Okio.sink(file));
+        try {
+            long length = getRepos(url, sink);
+            sink.close();
+            return length;
+        } catch (IOException | RuntimeException e) {
+            try {
+                sink.close();
+            } catch (IOException ignored) {
+                // the download failure is the one reported
+            }
+            file.delete();
+            throw e;
+        }
+    }
+
+    private Response execute(String url) throws IOException {
+        Response response = mOkHttpClient.newCall(new Request.Builder().url(url).build()).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("HTTP " + response.code() + " " + response.message());
+        }
+        return response;
     }
 
 }
@@ -2,53 +2,56 @@ package com.chizi.okhttp;
 
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.view.View;
-import android.widget.Button;
 import android.widget.TextView;
 
+import com.chizi.annotation.Binder;
+import com.chizi.annotation.DIActivity;
+import com.chizi.annotation.DIView;
+import com.chizi.annotation.OnClick;
+import com.chizi.http.RequestExecutor;
+
 import java.io.IOException;
 
+@DIActivity
 public class MainActivity extends AppCompatActivity {
 
-    private Button mTestButton;
-    private TextView mContentTextView;
+    @DIView(R.id.tvContent)
+    TextView mContentTextView;
+
+    private RequestExecutor.Subscription mRepos;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        initViews();
-        initListeners();
-    }
-
-    private void initViews() {
-        mTestButton = findViewById(R.id.btnTest);
-        mContentTextView = findViewById(R.id.tvContent);
+        Binder.bind(this);
     }
 
-    private void initListeners() {
-        mTestButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                getRepos();
-            }
-        });
+    @Override
+    protected void onDestroy() {
+        if (mRepos != null) {
+            mRepos.cancel();
+        }
+        Binder.unbind(this);
+        super.onDestroy();
     }
 
-    private void getRepos() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    String result = GithubService.newInstance().getRepos("https://api.github.com/users/chizidegit/repos");
+    @OnClick(R.id.btnTest)
+    void getRepos() {
+        // Taps while loading join the request in flight rather than starting a thread each.
+        mRepos = GithubService.getInstance().getRepos("https://api.github.com/users/chizidegit/repos",
+                new RequestExecutor.Callback<String>() {
+                    @Override
+                    public void onSuccess(String result) {
+                        setResultData(result);
+                    }
 
-                    setResultData(result);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }).start();
+                    @Override
+                    public void onFailure(IOException e) {
+                        e.printStackTrace();
+                    }
+                });
     }
 
     private void setResultData(final String result) {
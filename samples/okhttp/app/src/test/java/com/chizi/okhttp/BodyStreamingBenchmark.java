@@ -0,0 +1,168 @@
+package com.chizi.okhttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares reading a large repo list with {@code body().string()} against the streaming variants
+ * of {@link GithubService#getRepos}. Reports the heap each needs on top of what was live before,
+ * and the connections opened for {@value #REQUESTS} requests, one meaning all were reused.
+ *
+ * <pre>
+ * $ ./gradlew :app:testDebugUnitTest -Pbenchmark --tests com.chizi.okhttp.BodyStreamingBenchmark -i
+ * </pre>
+ */
+public class BodyStreamingBenchmark {
+
+    private static final int BODY_BYTES = 16 * 1024 * 1024;
+    private static final int REQUESTS = 5;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final MockWebServer mServer = new MockWebServer();
+    private Buffer mBody;
+    private String mUrl;
+    private int mRecorded;
+
+    @BeforeClass
+    public static void requireBenchmark() {
+        // Only run on request, with -Pbenchmark.
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mBody = new Buffer().writeUtf8("[");
+        for (int i = 0; mBody.size() < BODY_BYTES; i++) {
+            mBody.writeUtf8(i == 0 ? "" : ",").writeUtf8("{\"id\":").writeUtf8(String.valueOf(160470879 + i))
+                    .writeUtf8(",\"name\":\"repo-").writeUtf8(String.valueOf(i))
+                    .writeUtf8("\",\"description\":\"Chizi's Repo\"}");
+        }
+        mBody.writeUtf8("]");
+        mServer.start();
+        mUrl = mServer.url("/users/chizidegit/repos").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void stringVersusStreaming() throws IOException {
+        final GithubService service = GithubService.newInstance();
+        final File file = mFolder.newFile();
+        report("body().string()", measure(new Request() {
+            @Override
+            public long run() throws IOException {
+                return service.getRepos(mUrl).length();
+            }
+        }));
+        report("BodyReader", measure(new Request() {
+            @Override
+            public long run() throws IOException {
+                return service.getRepos(mUrl, new GithubService.BodyReader<Long>() {
+                    @Override
+                    public Long read(BufferedSource source) throws IOException {
+                        // Consumes up to each repo, so only a segment or two is ever buffered.
+                        long repos = 0;
+                        for (long index; (index = source.indexOf((byte) '{')) != -1; repos++) {
+                            source.skip(index + 1);
+                        }
+                        return repos;
+                    }
+                });
+            }
+        }));
+        report("Sink", measure(new Request() {
+            @Override
+            public long run() throws IOException {
+                return service.getRepos(mUrl, Okio.blackhole());
+            }
+        }));
+        report("File", measure(new Request() {
+            @Override
+            public long run() throws IOException {
+                long length = service.getRepos(mUrl, file);
+                assertEquals(mBody.size(), file.length());
+                return length;
+            }
+        }));
+    }
+
+    private long[] measure(Request request) throws IOException {
+        long peak = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            mServer.enqueue(new MockResponse().setBody(mBody.clone()));
+            long baseline = resetPeakHeap();
+            request.run();
+            peak = Math.max(peak, peakHeap() - baseline);
+        }
+        int connections = 0;
+        for (; mRecorded < mServer.getRequestCount(); mRecorded++) {
+            try {
+                if (mServer.takeRequest().getSequenceNumber() == 0) {
+                    connections++;
+                }
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return new long[]{peak, connections};
+    }
+
+    /**
+     * Collects what is not live any more, then restarts the peak from the live heap, returned.
+     */
+    private static long resetPeakHeap() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void report(String name, long[] result) {
+        System.out.println(String.format("%s: peak heap +%d KB, %d connection(s) for %d requests",
+                name, result[0] / 1024, result[1], REQUESTS));
+    }
+
+    private interface Request {
+        long run() throws IOException;
+    }
+
+}
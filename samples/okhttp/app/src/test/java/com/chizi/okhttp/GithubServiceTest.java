@@ -0,0 +1,167 @@
+package com.chizi.okhttp;
+
+import com.chizi.http.HttpClients;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.ConnectionPool;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class GithubServiceTest {
+
+    private static final int BODY_BYTES = 256 * 1024;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final GithubService mService = GithubService.newInstance();
+    private String mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.start();
+        mUrl = mServer.url("/users/chizidegit/repos").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void closesTheResponseWhenTheReaderThrows() throws IOException {
+        // chunked and larger than the buffers, so only closing the response releases the connection
+        mServer.enqueue(new MockResponse().setChunkedBody(body(), 4096));
+        final IOException failure = new IOException("stop");
+
+        try {
+            mService.getRepos(mUrl, new GithubService.BodyReader<Void>() {
+                @Override
+                public Void read(BufferedSource source) throws IOException {
+                    source.require(1024);
+                    throw failure;
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals(failure, e);
+        }
+        assertNoConnectionInUse();
+    }
+
+    @Test
+    public void closesTheResponseWhenTheSinkThrows() throws IOException {
+        mServer.enqueue(new MockResponse().setChunkedBody(body(), 4096));
+
+        try {
+            mService.getRepos(mUrl, new ForwardingSink(Okio.blackhole()) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    throw new IOException("disk full");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertNoConnectionInUse();
+    }
+
+    @Test
+    public void closesErrorResponses() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(503).setBody(body()));
+        }
+        File file = mFolder.newFile();
+
+        try {
+            mService.getRepos(mUrl, new GithubService.BodyReader<Void>() {
+                @Override
+                public Void read(BufferedSource source) {
+                    throw new AssertionError("read an error response");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("HTTP 503 Server Error", e.getMessage());
+        }
+        assertNoConnectionInUse();
+        try {
+            mService.getRepos(mUrl, Okio.blackhole());
+            fail();
+        } catch (IOException e) {
+            assertEquals("HTTP 503 Server Error", e.getMessage());
+        }
+        assertNoConnectionInUse();
+        try {
+            mService.getRepos(mUrl, file);
+            fail();
+        } catch (IOException e) {
+            assertEquals("HTTP 503 Server Error", e.getMessage());
+        }
+        assertNoConnectionInUse();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void writesTheBodyIntoTheFile() throws IOException {
+        Buffer body = body();
+        mServer.enqueue(new MockResponse().setBody(body.clone()));
+        File file = new File(mFolder.getRoot(), "repos.json");
+
+        assertEquals(body.size(), mService.getRepos(mUrl, file));
+        assertEquals(body.readUtf8(), Okio.buffer(Okio.source(file)).readUtf8());
+        assertNoConnectionInUse();
+    }
+
+    @Test
+    public void deletesThePartialFileWhenTheDownloadFails() throws IOException {
+        mServer.enqueue(new MockResponse().setBody(body())
+                .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+        File file = new File(mFolder.getRoot(), "repos.json");
+
+        try {
+            mService.getRepos(mUrl, file);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertFalse(file.exists());
+        assertNoConnectionInUse();
+    }
+
+    private static Buffer body() {
+        Buffer body = new Buffer().writeUtf8("[");
+        for (int i = 0; body.size() < BODY_BYTES; i++) {
+            body.writeUtf8(i == 0 ? "" : ",").writeUtf8("{\"id\":").writeUtf8(String.valueOf(160470879 + i))
+                    .writeUtf8(",\"name\":\"repo-").writeUtf8(String.valueOf(i)).writeUtf8("\"}");
+        }
+        return body.writeUtf8("]");
+    }
+
+    /**
+     * A connection is only released to the pool, or closed, once the response using it is closed.
+     */
+    private static void assertNoConnectionInUse() {
+        ConnectionPool pool = HttpClients.get().connectionPool();
+        assertEquals(pool.connectionCount(), pool.idleConnectionCount());
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares a new client per request, as the samples did, with the shared client, on requests to
+ * a local HTTPS server speaking HTTP/2. Reports the latency percentiles of each and the
+ * connections, hence TCP and TLS handshakes, they needed.
+ *
+ * <pre>
+ * $ ./gradlew :http:benchmark --tests com.chizi.http.HttpClientsBenchmark
+ * </pre>
+ */
+public class HttpClientsBenchmark {
+
+    private static final int WARMUP = 50;
+    private static final int REQUESTS = 300;
+
+    private final MockWebServer mServer = new MockWebServer();
+    private HandshakeCertificates mClientCertificates;
+    private int mRecorded;
+
+    @Before
+    public void setUp() throws IOException {
+        String host = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(host)
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        mClientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+        mServer.setServerSocketFactory(new NoDelayServerSocketFactory());
+        mServer.useHttps(serverCertificates.sslSocketFactory(), false);
+        mServer.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        for (int i = 0; i < 2 * (WARMUP + REQUESTS); i++) {
+            mServer.enqueue(new MockResponse().setBody("[{\"id\":160470879,\"name\":\"ChiziDeRepo\"}]"));
+        }
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void newClientPerRequestVersusShared() throws IOException {
+        Result perRequest = measure(new ClientSource() {
+            @Override
+            public OkHttpClient client() {
+                return withCertificates(new OkHttpClient.Builder());
+            }
+        });
+        final OkHttpClient shared = withCertificates(HttpClients.get().newBuilder());
+        Result reused = measure(new ClientSource() {
+            @Override
+            public OkHttpClient client() {
+                return shared;
+            }
+        });
+        assertEquals(0, reused.mConnections);
+        report("new client per request", perRequest);
+        report("shared client", reused);
+    }
+
+    private OkHttpClient withCertificates(OkHttpClient.Builder builder) {
+        return builder.sslSocketFactory(mClientCertificates.sslSocketFactory(), mClientCertificates.trustManager())
+                .build();
+    }
+
+    private Result measure(ClientSource source) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            request(source.client());
+        }
+        drainRecorded();
+        long[] nanos = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            request(source.client());
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        Result result = new Result();
+        result.mP50 = nanos[REQUESTS / 2];
+        result.mP99 = nanos[REQUESTS * 99 / 100];
+        result.mConnections = drainRecorded();
+        return result;
+    }
+
+    private void request(OkHttpClient client) throws IOException {
+        Request request = new Request.Builder().url(mServer.url("/users/chizidegit/repos")).build();
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+    }
+
+    /**
+     * @return the connections opened by the requests recorded since the last call
+     */
+    private int drainRecorded() {
+        int connections = 0;
+        for (; mRecorded < mServer.getRequestCount(); mRecorded++) {
+            try {
+                if (mServer.takeRequest().getSequenceNumber() == 0) {
+                    connections++;
+                }
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return connections;
+    }
+
+    private static void report(String name, Result result) {
+        System.out.println(String.format("%s: p50 %d us, p99 %d us, %d connections for %d requests", name,
+                result.mP50 / 1000, result.mP99 / 1000, result.mConnections, REQUESTS));
+    }
+
+    private interface ClientSource {
+        OkHttpClient client();
+    }
+
+    private static final class Result {
+        long mP50;
+        long mP99;
+        int mConnections;
+    }
+
+}
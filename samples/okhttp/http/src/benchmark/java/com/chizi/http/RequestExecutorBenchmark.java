@@ -0,0 +1,153 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends a burst of {@value #BURST} requests to a local server taking {@value #SERVER_MILLIS} ms
+ * per response: from a new thread each, as the sample activities did on every click, and through
+ * a {@link RequestExecutor}, for distinct URLs and for the same one, with the default limit of
+ * requests per host and a wider one. Reports the peak number of client threads, the one sending
+ * the burst included and the server's left out, the latency percentiles from sending to callback,
+ * and the requests the server got.
+ *
+ * <pre>
+ * $ ./gradlew :http:benchmark --tests com.chizi.http.RequestExecutorBenchmark
+ * </pre>
+ */
+public class RequestExecutorBenchmark {
+
+    private static final int BURST = 1000;
+    private static final long SERVER_MILLIS = 10;
+
+    private static final RequestExecutor.Reader<String> STRING = new RequestExecutor.Reader<String>() {
+        @Override
+        public String read(ResponseBody body) throws IOException {
+            return body.string();
+        }
+    };
+
+    private final MockWebServer mServer = new MockWebServer();
+    /**
+     * Threads inherit the group of the thread creating them, so the threads started by the burst
+     * and those of the dispatchers it uses join this group. The server's do not.
+     */
+    private final ThreadGroup mClientThreads = new ThreadGroup("client");
+    private int mRecorded;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.setServerSocketFactory(new NoDelayServerSocketFactory());
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Thread.sleep(SERVER_MILLIS);
+                return new MockResponse().setBody("[{\"id\":160470879,\"name\":\"ChiziDeRepo\"}]");
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void burst() throws InterruptedException {
+        final OkHttpClient client = HttpClients.newClient(new HttpClients.Config.Builder().build());
+        run("thread per request", false, new Burst() {
+            @Override
+            public void send(final Request request, final long[] latencies, final int index, final CountDownLatch done) {
+                final long start = System.nanoTime();
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try (Response response = client.newCall(request).execute()) {
+                            response.body().string();
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                        latencies[index] = System.nanoTime() - start;
+                        done.countDown();
+                    }
+                }).start();
+            }
+        });
+        run("executor, distinct URLs", false, enqueue(new RequestExecutor(client)));
+        run("executor, same URL", true, enqueue(new RequestExecutor(client)));
+        OkHttpClient wider = HttpClients.newClient(new HttpClients.Config.Builder().maxRequestsPerHost(32).build());
+        run("executor, 32 per host, distinct URLs", false, enqueue(new RequestExecutor(wider)));
+    }
+
+    private static Burst enqueue(final RequestExecutor executor) {
+        return new Burst() {
+            @Override
+            public void send(Request request, final long[] latencies, final int index, final CountDownLatch done) {
+                final long start = System.nanoTime();
+                executor.enqueue(null, request, STRING, new RequestExecutor.Callback<String>() {
+                    @Override
+                    public void onSuccess(String result) {
+                        latencies[index] = System.nanoTime() - start;
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(IOException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+            }
+        };
+    }
+
+    private void run(String name, final boolean sameUrl, final Burst burst) throws InterruptedException {
+        final long[] latencies = new long[BURST];
+        final CountDownLatch done = new CountDownLatch(BURST);
+        new Thread(mClientThreads, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < BURST; i++) {
+                    Request request = new Request.Builder()
+                            .url(mServer.url("/users/chizidegit/repos?page=" + (sameUrl ? 1 : i)))
+                            .build();
+                    burst.send(request, latencies, i, done);
+                }
+            }
+        }, "burst").start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        int peakThreads = 0;
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            assertTrue(System.nanoTime() < deadline);
+            peakThreads = Math.max(peakThreads, mClientThreads.activeCount());
+        }
+        int requests = mServer.getRequestCount() - mRecorded;
+        mRecorded = mServer.getRequestCount();
+        Arrays.sort(latencies);
+        System.out.println(String.format("%s: peak %d threads, p50 %d ms, p99 %d ms, max %d ms, %d requests",
+                name, peakThreads, latencies[BURST / 2] / 1000000, latencies[BURST * 99 / 100] / 1000000,
+                latencies[BURST - 1] / 1000000, requests));
+    }
+
+    private interface Burst {
+        void send(Request request, long[] latencies, int index, CountDownLatch done);
+    }
+
+}
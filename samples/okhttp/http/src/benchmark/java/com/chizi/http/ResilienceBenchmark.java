@@ -0,0 +1,92 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Sends {@value #REQUESTS} GETs one after the other to a local server failing
+ * {@value #FAILURE_PERCENT}% of the requests and answering {@value #SLOW_PERCENT}% of the others
+ * {@value #SLOW_MILLIS} ms late, through the shared client and through one with a
+ * {@link Resilience}. Reports the calls succeeding, their latency percentiles and the requests the
+ * server got.
+ *
+ * <pre>
+ * $ ./gradlew :http:benchmark --tests com.chizi.http.ResilienceBenchmark
+ * </pre>
+ */
+public class ResilienceBenchmark {
+
+    private static final int REQUESTS = 500;
+    private static final int FAILURE_PERCENT = 10;
+    private static final int SLOW_PERCENT = 5;
+    private static final long SLOW_MILLIS = 1000;
+
+    private final MockWebServer mServer = new MockWebServer();
+    private int mRecorded;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.setServerSocketFactory(new NoDelayServerSocketFactory());
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void injectedFaults() throws IOException {
+        run("shared client", HttpClients.newClient(new HttpClients.Config.Builder().build()));
+        run("resilience", HttpClients.newClient(new HttpClients.Config.Builder()
+                .resilience(new Resilience.Builder()
+                        .retries(3, 20, 200)
+                        .hedging(95, 20)
+                        .build())
+                .build()));
+    }
+
+    private void run(String name, OkHttpClient client) throws IOException {
+        FaultInjectingDispatcher faults = new FaultInjectingDispatcher(0x5eed, "[{\"id\":160470879,\"name\":\"ChiziDeRepo\"}]");
+        mServer.setDispatcher(faults);
+        for (int i = 0; i < 50; i++) {
+            request(client);
+        }
+        mRecorded = mServer.getRequestCount();
+        faults.setFaults(FAILURE_PERCENT / 100.0, SLOW_PERCENT / 100.0, SLOW_MILLIS);
+        long[] latencies = new long[REQUESTS];
+        int succeeded = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            if (request(client)) {
+                succeeded++;
+            }
+            latencies[i] = System.nanoTime() - start;
+        }
+        int requests = mServer.getRequestCount() - mRecorded;
+        Arrays.sort(latencies);
+        System.out.println(String.format("%s: %d/%d succeeded, p50 %d ms, p90 %d ms, p99 %d ms, max %d ms, %d requests",
+                name, succeeded, REQUESTS, latencies[REQUESTS / 2] / 1000000, latencies[REQUESTS * 9 / 10] / 1000000,
+                latencies[REQUESTS * 99 / 100] / 1000000, latencies[REQUESTS - 1] / 1000000, requests));
+    }
+
+    private boolean request(OkHttpClient client) {
+        Request request = new Request.Builder().url(mServer.url("/users/chizidegit/repos")).build();
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+            return response.isSuccessful();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
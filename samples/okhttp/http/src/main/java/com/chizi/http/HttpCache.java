@@ -0,0 +1,168 @@
+package com.chizi.http;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The disk cache of a client, bounded and evicting the least recently used responses. A cached
+ * response gone stale is revalidated with its {@code ETag} or {@code Last-Modified}, so that an
+ * unchanged one costs a 304 and is read from disk. Offline, or when the network fails, cached
+ * responses are served up to {@code maxStale} past their freshness.
+ *
+ * <pre>
+ * HttpCache cache = HttpCache.of(HttpClients.get());
+ * cache.setOffline(true);
+ * </pre>
+ */
+public final class HttpCache implements Interceptor {
+
+    private final Cache mCache;
+    private final CacheControl mStale;
+    private volatile boolean mOffline;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mRevalidations = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mStaleHits = new AtomicLong();
+
+    HttpCache(Cache cache, long maxStaleMillis) {
+        mCache = cache;
+        mStale = new CacheControl.Builder()
+                .onlyIfCached()
+                .maxStale((int) Math.min(TimeUnit.MILLISECONDS.toSeconds(maxStaleMillis), Integer.MAX_VALUE),
+                        TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the cache installed on the client, or null
+     */
+    public static HttpCache of(OkHttpClient client) {
+        for (Interceptor interceptor : client.interceptors()) {
+            if (interceptor instanceof HttpCache) {
+                return (HttpCache) interceptor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Serves every GET from the cache while offline, without trying the network. GETs not cached
+     * then fail with a 504.
+     */
+    public void setOffline(boolean offline) {
+        mOffline = offline;
+    }
+
+    public boolean isOffline() {
+        return mOffline;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (Resilience.isAttempt(chain.call())) {
+            // Counted, and served stale if it fails, as the call it is made for.
+            return chain.proceed(request);
+        }
+        boolean cacheable = request.method().equals("GET");
+        if (cacheable && mOffline) {
+            return countStale(chain.proceed(request.newBuilder().cacheControl(mStale).build()));
+        }
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (!cacheable) {
+                throw e;
+            }
+            Response stale;
+            try {
+                stale = chain.proceed(request.newBuilder().cacheControl(mStale).build());
+            } catch (IOException staleFailure) {
+                throw withCause(e, staleFailure);
+            }
+            if (stale.code() == 504) {
+                stale.close();
+                throw e;
+            }
+            return countStale(stale);
+        }
+        if (response.networkResponse() == null) {
+            (response.cacheResponse() != null ? mHits : mMisses).incrementAndGet();
+        } else if (response.cacheResponse() != null && response.networkResponse().code() == 304) {
+            mRevalidations.incrementAndGet();
+        } else {
+            mMisses.incrementAndGet();
+        }
+        return response;
+    }
+
+    /**
+     * Keeps the network failure as the one reported, with the failed stale read as its cause if it
+     * has none. Not a suppressed exception, Android only has those from 4.4 on.
+     */
+    private static IOException withCause(IOException e, IOException cause) {
+        if (e.getCause() == null) {
+            try {
+                e.initCause(cause);
+            } catch (IllegalStateException alreadyInitialized) {
+                // constructed with a null cause, which cannot be replaced
+            }
+        }
+        return e;
+    }
+
+    private Response countStale(Response response) {
+        (response.cacheResponse() != null ? mStaleHits : mMisses).incrementAndGet();
+        return response;
+    }
+
+    /**
+     * Responses served from the cache while fresh, without the network.
+     */
+    public long hitCount() {
+        return mHits.get();
+    }
+
+    /**
+     * Responses served from the cache after the server answered a conditional request with 304.
+     */
+    public long revalidationCount() {
+        return mRevalidations.get();
+    }
+
+    /**
+     * Responses downloaded whole, or failing offline for want of a cached one.
+     */
+    public long missCount() {
+        return mMisses.get();
+    }
+
+    /**
+     * Responses served from the cache, possibly stale, while offline or after a network failure.
+     */
+    public long staleHitCount() {
+        return mStaleHits.get();
+    }
+
+    /**
+     * The bytes the cache currently takes on disk.
+     */
+    public long size() throws IOException {
+        return mCache.size();
+    }
+
+    public long maxSize() {
+        return mCache.maxSize();
+    }
+
+}
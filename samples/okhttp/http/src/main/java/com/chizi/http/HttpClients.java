@@ -0,0 +1,229 @@
+package com.chizi.http;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * The {@link OkHttpClient} shared by the whole process. Every new client has its own connection
+ * pool and dispatcher threads, so sockets, TLS sessions and HTTP/2 connections are only reused
+ * between the requests of one client.
+ *
+ * <pre>
+ * HttpClients.install(new HttpClients.Config.Builder()
+ *         .maxRequestsPerHost(8)
+ *         .build());
+ * ...
+ * OkHttpClient client = HttpClients.get();
+ * </pre>
+ *
+ * Clients needing other settings should derive from {@link #get()} with
+ * {@link OkHttpClient#newBuilder()}, which keeps the shared pool and dispatcher, and the cache,
+ * metrics and {@link Resilience} of the config. The attempts of a call of a derived client run on
+ * that client, with its own interceptors and settings.
+ */
+public final class HttpClients {
+
+    /**
+     * The settings of the shared client.
+     */
+    public static final class Config {
+
+        final int mMaxIdleConnections;
+        final long mKeepAliveMillis;
+        final int mMaxRequests;
+        final int mMaxRequestsPerHost;
+        final List<Protocol> mProtocols;
+        final long mConnectTimeoutMillis;
+        final long mReadTimeoutMillis;
+        final long mPingIntervalMillis;
+        final File mCacheDirectory;
+        final long mCacheMaxSize;
+        final long mMaxStaleMillis;
+        final NetworkMetrics mMetrics;
+        final Resilience mResilience;
+
+        Config(Builder builder) {
+            mMaxIdleConnections = builder.mMaxIdleConnections;
+            mKeepAliveMillis = builder.mKeepAliveMillis;
+            mMaxRequests = builder.mMaxRequests;
+            mMaxRequestsPerHost = builder.mMaxRequestsPerHost;
+            mProtocols = builder.mProtocols;
+            mConnectTimeoutMillis = builder.mConnectTimeoutMillis;
+            mReadTimeoutMillis = builder.mReadTimeoutMillis;
+            mPingIntervalMillis = builder.mPingIntervalMillis;
+            mCacheDirectory = builder.mCacheDirectory;
+            mCacheMaxSize = builder.mCacheMaxSize;
+            mMaxStaleMillis = builder.mMaxStaleMillis;
+            mMetrics = builder.mMetrics;
+            mResilience = builder.mResilience;
+        }
+
+        public static final class Builder {
+
+            private int mMaxIdleConnections = 5;
+            private long mKeepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+            private int mMaxRequests = 64;
+            private int mMaxRequestsPerHost = 5;
+            private List<Protocol> mProtocols = Collections.unmodifiableList(
+                    Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+            private long mConnectTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+            private long mReadTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+            private long mPingIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+            private File mCacheDirectory;
+            private long mCacheMaxSize;
+            private long mMaxStaleMillis;
+            private NetworkMetrics mMetrics;
+            private Resilience mResilience;
+
+            /**
+             * Idle connections kept in the pool, each for up to {@code keepAliveMillis}.
+             */
+            public Builder connectionPool(int maxIdleConnections, long keepAliveMillis) {
+                mMaxIdleConnections = maxIdleConnections;
+                mKeepAliveMillis = keepAliveMillis;
+                return this;
+            }
+
+            /**
+             * Limits of the asynchronous calls running at once; further calls wait in the dispatcher.
+             */
+            public Builder maxRequests(int maxRequests) {
+                mMaxRequests = maxRequests;
+                return this;
+            }
+
+            public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+                mMaxRequestsPerHost = maxRequestsPerHost;
+                return this;
+            }
+
+            /**
+             * HTTP/2 first by default, so the calls to a host share one multiplexed connection.
+             */
+            public Builder protocols(Protocol... protocols) {
+                mProtocols = Collections.unmodifiableList(Arrays.asList(protocols.clone()));
+                return this;
+            }
+
+            public Builder timeouts(long connectTimeoutMillis, long readTimeoutMillis) {
+                mConnectTimeoutMillis = connectTimeoutMillis;
+                mReadTimeoutMillis = readTimeoutMillis;
+                return this;
+            }
+
+            /**
+             * Pings of idle HTTP/2 connections, which detect the dead ones before a call uses them.
+             * Zero disables them.
+             */
+            public Builder pingInterval(long pingIntervalMillis) {
+                mPingIntervalMillis = pingIntervalMillis;
+                return this;
+            }
+
+            /**
+             * Caches responses in the directory, up to {@code maxSize} bytes, through an
+             * {@link HttpCache} serving them up to {@code maxStaleMillis} past their freshness when
+             * offline. None by default.
+             */
+            public Builder cache(File directory, long maxSize, long maxStaleMillis) {
+                mCacheDirectory = directory;
+                mCacheMaxSize = maxSize;
+                mMaxStaleMillis = maxStaleMillis;
+                return this;
+            }
+
+            /**
+             * Records the calls of the client, found back with {@link NetworkMetrics#of}. None by
+             * default.
+             */
+            public Builder metrics(NetworkMetrics metrics) {
+                mMetrics = metrics;
+                return this;
+            }
+
+            /**
+             * Retries, hedges and circuit breaking for the calls of the client. None by default.
+             */
+            public Builder resilience(Resilience resilience) {
+                mResilience = resilience;
+                return this;
+            }
+
+            public Config build() {
+                return new Config(this);
+            }
+        }
+    }
+
+    private static Config sConfig = new Config.Builder().build();
+    private static volatile OkHttpClient sClient;
+
+    private HttpClients() {
+    }
+
+    /**
+     * Replaces the default settings, before the shared client is first used.
+     */
+    public static synchronized void install(Config config) {
+        if (sClient != null) {
+            throw new IllegalStateException("The shared client is already in use");
+        }
+        sConfig = config;
+    }
+
+    public static OkHttpClient get() {
+        OkHttpClient client = sClient;
+        if (client == null) {
+            synchronized (HttpClients.class) {
+                client = sClient;
+                if (client == null) {
+                    client = sClient = newClient(sConfig);
+                }
+            }
+        }
+        return client;
+    }
+
+    static OkHttpClient newClient(Config config) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.mMaxRequests);
+        dispatcher.setMaxRequestsPerHost(config.mMaxRequestsPerHost);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(config.mMaxIdleConnections, config.mKeepAliveMillis,
+                        TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(config.mProtocols)
+                .connectTimeout(config.mConnectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(config.mReadTimeoutMillis, TimeUnit.MILLISECONDS)
+                .pingInterval(config.mPingIntervalMillis, TimeUnit.MILLISECONDS);
+        HttpCache httpCache = null;
+        if (config.mCacheDirectory != null) {
+            Cache cache = new Cache(config.mCacheDirectory, config.mCacheMaxSize);
+            builder.cache(cache);
+            httpCache = new HttpCache(cache, config.mMaxStaleMillis);
+        }
+        if (config.mMetrics != null) {
+            builder.eventListenerFactory(config.mMetrics);
+        }
+        // The cache outermost, serving stale responses once the attempts failed.
+        if (httpCache != null) {
+            builder.addInterceptor(httpCache);
+        }
+        if (config.mResilience != null) {
+            config.mResilience.setMetrics(config.mMetrics);
+            config.mResilience.setMaxRequests(config.mMaxRequests);
+            builder.addInterceptor(config.mResilience);
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,382 @@
+package com.chizi.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Records where the time of the calls of a client goes, phase by phase, the bytes they transfer
+ * and how often they reuse a connection, per host. Recording costs a few {@code nanoTime()} calls
+ * and atomic increments per call; there is no lock.
+ *
+ * <pre>
+ * HttpClients.install(new HttpClients.Config.Builder()
+ *         .metrics(new NetworkMetrics())
+ *         .build());
+ * ...
+ * String json = NetworkMetrics.of(HttpClients.get()).snapshot().toJson();
+ * </pre>
+ */
+public final class NetworkMetrics implements EventListener.Factory {
+
+    public enum Phase {
+        /** The whole call, from start to end or failure. */
+        CALL,
+        DNS,
+        /** TCP connect, including the TLS handshake. */
+        CONNECT,
+        TLS,
+        /** From having sent the request, headers and body, to having received the response headers. */
+        TIME_TO_FIRST_BYTE,
+        RESPONSE_BODY
+    }
+
+    /**
+     * Buckets of powers of two microseconds, the last holding anything longer.
+     */
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray[] mHistograms = new AtomicLongArray[Phase.values().length];
+    private final AtomicLong[] mTotalMicros = new AtomicLong[Phase.values().length];
+    private final AtomicLong mRequestBytes = new AtomicLong();
+    private final AtomicLong mResponseBytes = new AtomicLong();
+    private final AtomicLong mFailedCalls = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong[]> mHosts = new ConcurrentHashMap<>();
+
+    public NetworkMetrics() {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new AtomicLongArray(BUCKETS);
+            mTotalMicros[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * @return the metrics installed on the client, or null
+     */
+    public static NetworkMetrics of(OkHttpClient client) {
+        EventListener.Factory factory = client.eventListenerFactory();
+        return factory instanceof NetworkMetrics ? (NetworkMetrics) factory : null;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new Listener(call.request().url().host());
+    }
+
+    /**
+     * Records a call answered by an attempt of a {@link Resilience}, for which OkHttp signals
+     * neither the end nor the failure of reading the body.
+     */
+    void recordCall(long startNanos, boolean failed) {
+        record(Phase.CALL, startNanos);
+        if (failed) {
+            mFailedCalls.incrementAndGet();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[][] buckets = new long[mHistograms.length][BUCKETS];
+        long[] totals = new long[mHistograms.length];
+        for (int i = 0; i < mHistograms.length; i++) {
+            for (int j = 0; j < BUCKETS; j++) {
+                buckets[i][j] = mHistograms[i].get(j);
+            }
+            totals[i] = mTotalMicros[i].get();
+        }
+        Map<String, long[]> hosts = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong[]> entry : mHosts.entrySet()) {
+            AtomicLong[] counts = entry.getValue();
+            hosts.put(entry.getKey(), new long[]{counts[0].get(), counts[1].get()});
+        }
+        return new Snapshot(buckets, totals, mRequestBytes.get(), mResponseBytes.get(), mFailedCalls.get(), hosts);
+    }
+
+    private void record(Phase phase, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mHistograms[phase.ordinal()].incrementAndGet(bucket);
+        mTotalMicros[phase.ordinal()].addAndGet(micros);
+    }
+
+    /**
+     * The connections acquired and opened for the host.
+     */
+    private AtomicLong[] host(String host) {
+        AtomicLong[] counts = mHosts.get(host);
+        if (counts == null) {
+            AtomicLong[] created = new AtomicLong[]{new AtomicLong(), new AtomicLong()};
+            counts = mHosts.putIfAbsent(host, created);
+            if (counts == null) {
+                counts = created;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * The events of one call, always delivered on one thread at a time.
+     */
+    private final class Listener extends EventListener {
+
+        private final String mHost;
+        /**
+         * False for the attempts a {@link Resilience} makes for a call, whose network is recorded
+         * but whose duration and failure are left to the call.
+         */
+        private boolean mCall;
+        private long mCallStart;
+        private long mDnsStart;
+        private long mConnectStart;
+        private long mTlsStart;
+        private long mRequestSent;
+        private long mBodyStart;
+        private boolean mConnected;
+
+        Listener(String host) {
+            mHost = host;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            mCall = !Resilience.isAttempt(call);
+            mCallStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            mDnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            record(Phase.DNS, mDnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            mConnectStart = System.nanoTime();
+            mConnected = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            mTlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            record(Phase.TLS, mTlsStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            record(Phase.CONNECT, mConnectStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            AtomicLong[] counts = host(mHost);
+            counts[0].incrementAndGet();
+            if (mConnected) {
+                counts[1].incrementAndGet();
+                mConnected = false;
+            }
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            mRequestSent = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            mRequestSent = System.nanoTime();
+            mRequestBytes.addAndGet(byteCount);
+        }
+
+        /**
+         * Not at {@code responseHeadersStart}, which OkHttp signals before it blocks reading the
+         * headers.
+         */
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            record(Phase.TIME_TO_FIRST_BYTE, mRequestSent);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            mBodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            record(Phase.RESPONSE_BODY, mBodyStart);
+            mResponseBytes.addAndGet(byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            if (mCall) {
+                record(Phase.CALL, mCallStart);
+            }
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            if (mCall) {
+                record(Phase.CALL, mCallStart);
+                mFailedCalls.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The metrics at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long[][] mBuckets;
+        private final long[] mTotalMicros;
+        private final long mRequestBytes;
+        private final long mResponseBytes;
+        private final long mFailedCalls;
+        private final Map<String, long[]> mHosts;
+
+        Snapshot(long[][] buckets, long[] totalMicros, long requestBytes, long responseBytes, long failedCalls,
+                 Map<String, long[]> hosts) {
+            mBuckets = buckets;
+            mTotalMicros = totalMicros;
+            mRequestBytes = requestBytes;
+            mResponseBytes = responseBytes;
+            mFailedCalls = failedCalls;
+            mHosts = hosts;
+        }
+
+        public long count(Phase phase) {
+            long count = 0;
+            for (long bucket : mBuckets[phase.ordinal()]) {
+                count += bucket;
+            }
+            return count;
+        }
+
+        public long meanMicros(Phase phase) {
+            long count = count(phase);
+            return count == 0 ? 0 : mTotalMicros[phase.ordinal()] / count;
+        }
+
+        /**
+         * The upper bound of the bucket holding the percentile, so at most twice the exact value.
+         *
+         * @param percentile from 0 to 100
+         */
+        public long percentileMicros(Phase phase, double percentile) {
+            long[] buckets = mBuckets[phase.ordinal()];
+            long rank = (long) Math.ceil(count(phase) * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * The bucket counts of the phase; bucket {@code i} holds durations under {@code 2^i}
+         * microseconds and at least half that.
+         */
+        public long[] buckets(Phase phase) {
+            return mBuckets[phase.ordinal()].clone();
+        }
+
+        public long requestBytes() {
+            return mRequestBytes;
+        }
+
+        public long responseBytes() {
+            return mResponseBytes;
+        }
+
+        public long failedCalls() {
+            return mFailedCalls;
+        }
+
+        public Iterable<String> hosts() {
+            return mHosts.keySet();
+        }
+
+        public long connectionsAcquired(String host) {
+            long[] counts = mHosts.get(host);
+            return counts == null ? 0 : counts[0];
+        }
+
+        public long connectionsOpened(String host) {
+            long[] counts = mHosts.get(host);
+            return counts == null ? 0 : counts[1];
+        }
+
+        /**
+         * The share of the connections acquired for the host which were reused, from 0 to 1.
+         */
+        public double reuseRate(String host) {
+            long acquired = connectionsAcquired(host);
+            return acquired == 0 ? 0 : (double) (acquired - connectionsOpened(host)) / acquired;
+        }
+
+        /**
+         * A single JSON object, for logs or an upload.
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{\"phases\":{");
+            for (Phase phase : Phase.values()) {
+                if (phase.ordinal() > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(phase.name().toLowerCase(Locale.US)).append("\":{\"count\":").append(count(phase))
+                        .append(",\"meanMicros\":").append(meanMicros(phase))
+                        .append(",\"p50Micros\":").append(percentileMicros(phase, 50))
+                        .append(",\"p90Micros\":").append(percentileMicros(phase, 90))
+                        .append(",\"p99Micros\":").append(percentileMicros(phase, 99))
+                        .append('}');
+            }
+            json.append("},\"requestBytes\":").append(mRequestBytes)
+                    .append(",\"responseBytes\":").append(mResponseBytes)
+                    .append(",\"failedCalls\":").append(mFailedCalls)
+                    .append(",\"hosts\":{");
+            boolean first = true;
+            for (String host : mHosts.keySet()) {
+                json.append(first ? "" : ",").append('"').append(host.replace("\"", "\\\""))
+                        .append("\":{\"acquired\":").append(connectionsAcquired(host))
+                        .append(",\"opened\":").append(connectionsOpened(host))
+                        .append(",\"reuseRate\":").append(String.format(Locale.US, "%.3f", reuseRate(host)))
+                        .append('}');
+                first = false;
+            }
+            return json.append("}}").toString();
+        }
+    }
+
+}
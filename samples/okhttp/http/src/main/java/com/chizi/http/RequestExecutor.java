@@ -0,0 +1,220 @@
+package com.chizi.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Runs requests asynchronously on the dispatcher of a client, whose limits bound the calls running
+ * at once, in total and per host, and their threads; a {@link Resilience} of the client makes their
+ * attempts on up to twice as many threads. A GET requested again while in flight, with an equal
+ * reader, joins the call already running instead of starting one. A request made under the tag of
+ * a previous one still in flight supersedes it: the previous callback is dropped, and its call
+ * cancelled unless others still wait for it.
+ *
+ * <pre>
+ * mSubscription = executor.enqueue("repos", request, reader, callback);
+ * ...
+ * mSubscription.cancel();
+ * </pre>
+ *
+ * Callbacks run on the dispatcher thread of the call.
+ */
+public final class RequestExecutor {
+
+    /**
+     * Reads the body of a successful response, on the dispatcher thread. Readers should implement
+     * {@code equals} when their instances are not shared, so that their calls can be joined.
+     */
+    public interface Reader<T> {
+
+        T read(ResponseBody body) throws IOException;
+    }
+
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        /**
+         * The call failed, was answered with an unsuccessful status, or could not be read.
+         */
+        void onFailure(IOException e);
+    }
+
+    /**
+     * The wait of one caller for a call, possibly shared with others.
+     */
+    public static final class Subscription {
+
+        private final RequestExecutor mExecutor;
+        private final Flight mFlight;
+        private final Callback<Object> mCallback;
+        private final String mTag;
+        private boolean mCancelled;
+
+        private Subscription(RequestExecutor executor, Flight flight, Callback<Object> callback, String tag) {
+            mExecutor = executor;
+            mFlight = flight;
+            mCallback = callback;
+            mTag = tag;
+        }
+
+        /**
+         * Drops the callback, even when the result is being delivered to others, and cancels the
+         * call if no one else waits for it.
+         */
+        public void cancel() {
+            mExecutor.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            synchronized (mExecutor) {
+                return mCancelled;
+            }
+        }
+    }
+
+    private final OkHttpClient mClient;
+    private final Map<List<Object>, Flight> mFlights = new HashMap<>();
+    private final Map<String, Subscription> mTagged = new HashMap<>();
+
+    public RequestExecutor(OkHttpClient client) {
+        mClient = client;
+    }
+
+    /**
+     * @param tag the request superseded by this one is the one made under the same tag, or null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Subscription enqueue(String tag, Request request, Reader<T> reader, Callback<T> callback) {
+        Flight flight;
+        Subscription subscription;
+        boolean start = false;
+        synchronized (this) {
+            List<Object> key = request.method().equals("GET") ? Arrays.<Object>asList(request.url(), reader) : null;
+            flight = key == null ? null : mFlights.get(key);
+            if (flight == null) {
+                flight = new Flight(key, mClient.newCall(request), (Reader<Object>) reader);
+                if (key != null) {
+                    mFlights.put(key, flight);
+                }
+                start = true;
+            }
+            subscription = new Subscription(this, flight, (Callback<Object>) callback, tag);
+            flight.mSubscriptions.add(subscription);
+            if (tag != null) {
+                Subscription superseded = mTagged.put(tag, subscription);
+                if (superseded != null) {
+                    cancelLocked(superseded);
+                }
+            }
+        }
+        if (start) {
+            flight.mCall.enqueue(flight);
+        }
+        return subscription;
+    }
+
+    private synchronized void cancel(Subscription subscription) {
+        if (subscription.mTag != null && mTagged.get(subscription.mTag) == subscription) {
+            mTagged.remove(subscription.mTag);
+        }
+        cancelLocked(subscription);
+    }
+
+    private void cancelLocked(Subscription subscription) {
+        if (subscription.mCancelled) {
+            return;
+        }
+        subscription.mCancelled = true;
+        Flight flight = subscription.mFlight;
+        flight.mSubscriptions.remove(subscription);
+        if (flight.mSubscriptions.isEmpty()) {
+            if (flight.mKey != null && mFlights.get(flight.mKey) == flight) {
+                mFlights.remove(flight.mKey);
+            }
+            flight.mCall.cancel();
+        }
+    }
+
+    /**
+     * Ends the flight, returning the subscriptions still waiting for its result.
+     */
+    private synchronized List<Subscription> land(Flight flight) {
+        if (flight.mKey != null && mFlights.get(flight.mKey) == flight) {
+            mFlights.remove(flight.mKey);
+        }
+        List<Subscription> subscriptions = new ArrayList<>(flight.mSubscriptions);
+        flight.mSubscriptions.clear();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.mTag != null && mTagged.get(subscription.mTag) == subscription) {
+                mTagged.remove(subscription.mTag);
+            }
+        }
+        return subscriptions;
+    }
+
+    /**
+     * One call, with everyone waiting for it.
+     */
+    private final class Flight implements okhttp3.Callback {
+
+        final List<Object> mKey;
+        final Call mCall;
+        final Reader<Object> mReader;
+        final List<Subscription> mSubscriptions = new ArrayList<>(1);
+
+        Flight(List<Object> key, Call call, Reader<Object> reader) {
+            mKey = key;
+            mCall = call;
+            mReader = reader;
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            Object result = null;
+            IOException failure = null;
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException("HTTP " + response.code() + " " + response.message());
+                }
+                result = mReader.read(response.body());
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e);
+            } finally {
+                response.close();
+            }
+            for (Subscription subscription : land(this)) {
+                if (subscription.isCancelled()) {
+                    continue;
+                }
+                if (failure == null) {
+                    subscription.mCallback.onSuccess(result);
+                } else {
+                    subscription.mCallback.onFailure(failure);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            for (Subscription subscription : land(this)) {
+                if (!subscription.isCancelled()) {
+                    subscription.mCallback.onFailure(e);
+                }
+            }
+        }
+    }
+
+}
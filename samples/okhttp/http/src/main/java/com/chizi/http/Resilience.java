@@ -0,0 +1,575 @@
+package com.chizi.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Bounds the failures and the tail latency of the calls of a client. Idempotent requests failing
+ * with an {@code IOException} or a 502, 503 or 504 are retried after a jittered exponential
+ * backoff, and a request still unanswered past a percentile of the recent latencies of its host is
+ * sent a second time, the first response winning and the other call being cancelled. Every host
+ * has a circuit breaker, which opens when too many of its recent calls failed: calls then fail
+ * at once with a {@link CircuitOpenException} until, after a while, a single trial call succeeds.
+ *
+ * <pre>
+ * HttpClients.install(new HttpClients.Config.Builder()
+ *         .resilience(new Resilience.Builder().hedging(95, 50).build())
+ *         .build());
+ * </pre>
+ *
+ * The attempts of an idempotent request are copies of its call, so they run on the client of the
+ * call, derived ones included, with all its interceptors and settings. They are made on threads of
+ * their own rather than on the dispatcher, whose slots the calls waiting for them may all hold: at
+ * most twice the {@code maxRequests} of the client, for a call and its hedge, further attempts
+ * waiting for a thread. An {@link HttpCache} installed along still serves stale responses once the
+ * attempts failed or the circuit is open.
+ */
+public final class Resilience implements Interceptor {
+
+    /**
+     * Thrown without trying the network while the circuit breaker of the host is open.
+     */
+    public static final class CircuitOpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String host, IOException cause) {
+            super("Circuit open for " + host, cause);
+        }
+    }
+
+    public static final class Builder {
+
+        private int mMaxAttempts = 3;
+        private long mBackoffMillis = 100;
+        private long mMaxBackoffMillis = TimeUnit.SECONDS.toMillis(2);
+        private double mHedgePercentile = 95;
+        private long mMinHedgeDelayMillis = 50;
+        private int mWindow = 20;
+        private double mFailureRatio = 0.5;
+        private long mOpenMillis = TimeUnit.SECONDS.toMillis(30);
+
+        /**
+         * Attempts of an idempotent request, the first included, retries waiting a random time up
+         * to {@code backoffMillis} doubled at every retry and capped to {@code maxBackoffMillis}.
+         * One attempt disables retries.
+         */
+        public Builder retries(int maxAttempts, long backoffMillis, long maxBackoffMillis) {
+            mMaxAttempts = maxAttempts;
+            mBackoffMillis = backoffMillis;
+            mMaxBackoffMillis = maxBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Sends an idempotent request again once its first attempt took longer than the percentile
+         * of the latencies of the host, and at least {@code minDelayMillis}. Hedging waits for
+         * enough latencies to be known; a zero percentile disables it.
+         */
+        public Builder hedging(double percentile, long minDelayMillis) {
+            mHedgePercentile = percentile;
+            mMinHedgeDelayMillis = minDelayMillis;
+            return this;
+        }
+
+        /**
+         * Opens the circuit of a host for {@code openMillis} when at least {@code failureRatio} of
+         * its last {@code window} attempts failed, with an {@code IOException} or a 5xx.
+         */
+        public Builder circuitBreaker(int window, double failureRatio, long openMillis) {
+            mWindow = window;
+            mFailureRatio = failureRatio;
+            mOpenMillis = openMillis;
+            return this;
+        }
+
+        public Resilience build() {
+            return new Resilience(this);
+        }
+    }
+
+    private static final Set<String> IDEMPOTENT = new HashSet<>(
+            Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE"));
+    private static final Set<Integer> RETRIED = new HashSet<>(Arrays.asList(502, 503, 504));
+    /**
+     * Latencies kept per host for the hedging percentile.
+     */
+    private static final int LATENCIES = 64;
+    private static final long POLL_MILLIS = 50;
+    private static final Random RANDOM = new Random();
+    /**
+     * The attempt calls being made, which the interceptors of their client let through.
+     */
+    private static final Set<Call> ATTEMPTS = Collections.newSetFromMap(new ConcurrentHashMap<Call, Boolean>());
+    /**
+     * The {@code maxRequests} of a dispatcher left to its default.
+     */
+    private static final int MAX_REQUESTS = 64;
+
+    private final int mMaxAttempts;
+    private final long mBackoffMillis;
+    private final long mMaxBackoffMillis;
+    private final double mHedgePercentile;
+    private final long mMinHedgeDelayNanos;
+    private final int mWindow;
+    private final double mFailureRatio;
+    private final long mOpenNanos;
+
+    private final ConcurrentMap<String, Host> mHosts = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor mExecutor;
+    private volatile NetworkMetrics mMetrics;
+
+    private final AtomicLong mRetries = new AtomicLong();
+    private final AtomicLong mHedges = new AtomicLong();
+    private final AtomicLong mRejections = new AtomicLong();
+
+    Resilience(Builder builder) {
+        mMaxAttempts = Math.max(1, builder.mMaxAttempts);
+        mBackoffMillis = builder.mBackoffMillis;
+        mMaxBackoffMillis = builder.mMaxBackoffMillis;
+        mHedgePercentile = builder.mHedgePercentile;
+        mMinHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.mMinHedgeDelayMillis);
+        mWindow = builder.mWindow;
+        mFailureRatio = builder.mFailureRatio;
+        mOpenNanos = TimeUnit.MILLISECONDS.toNanos(builder.mOpenMillis);
+        mExecutor = new ThreadPoolExecutor(2 * MAX_REQUESTS, 2 * MAX_REQUESTS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Resilience attempt");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the resilience installed on the client, or null
+     */
+    public static Resilience of(OkHttpClient client) {
+        for (Interceptor interceptor : client.interceptors()) {
+            if (interceptor instanceof Resilience) {
+                return (Resilience) interceptor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the metrics of the client, recording the calls answered with an attempt.
+     */
+    void setMetrics(NetworkMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Sizes the attempt threads to the limit of the dispatcher of the client.
+     */
+    void setMaxRequests(int maxRequests) {
+        int threads = 2 * Math.max(1, maxRequests);
+        if (threads > mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(threads);
+            mExecutor.setCorePoolSize(threads);
+        } else {
+            mExecutor.setCorePoolSize(threads);
+            mExecutor.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * Whether the call is an attempt a {@link Resilience} is making for another call.
+     */
+    static boolean isAttempt(Call call) {
+        return ATTEMPTS.contains(call);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.cacheControl().onlyIfCached() || isAttempt(chain.call())) {
+            return chain.proceed(request);
+        }
+        Host host = host(request.url().host());
+        if (!IDEMPOTENT.contains(request.method())) {
+            if (!host.allow()) {
+                mRejections.incrementAndGet();
+                throw new CircuitOpenException(host.mName, null);
+            }
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                host.finished(chain.call().isCanceled() ? null : false, 0);
+                throw e;
+            }
+            host.finished(response.code() < 500, System.nanoTime() - start);
+            return response;
+        }
+        long start = System.nanoTime();
+        IOException failure = null;
+        for (int attempt = 0; attempt < mMaxAttempts; attempt++) {
+            if (attempt > 0) {
+                mRetries.incrementAndGet();
+                backoff(chain.call(), attempt);
+            }
+            if (!host.allow()) {
+                mRejections.incrementAndGet();
+                throw new CircuitOpenException(host.mName, failure);
+            }
+            Race race = new Race(chain.call(), host);
+            Response response;
+            try {
+                response = race.run();
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    throw e;
+                }
+                failure = e;
+                continue;
+            }
+            if (!RETRIED.contains(response.code()) || attempt == mMaxAttempts - 1) {
+                return race.forward(response, start);
+            }
+            response.close();
+            failure = new IOException("HTTP " + response.code() + " " + response.message());
+        }
+        throw failure;
+    }
+
+    /**
+     * Idempotent requests sent again after a failure.
+     */
+    public long retryCount() {
+        return mRetries.get();
+    }
+
+    /**
+     * Duplicate requests sent for attempts slower than the hedging percentile.
+     */
+    public long hedgeCount() {
+        return mHedges.get();
+    }
+
+    /**
+     * Calls failed at once because the circuit of their host was open.
+     */
+    public long rejectionCount() {
+        return mRejections.get();
+    }
+
+    public boolean isOpen(String host) {
+        Host state = mHosts.get(host);
+        return state != null && state.isOpen();
+    }
+
+    private Host host(String name) {
+        Host host = mHosts.get(name);
+        if (host == null) {
+            Host created = new Host(name);
+            host = mHosts.putIfAbsent(name, created);
+            if (host == null) {
+                host = created;
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Waits up to the backoff of the retry, jittered over the whole range so that the retries of
+     * many clients spread out.
+     */
+    private void backoff(Call call, int retry) throws IOException {
+        long cap = Math.min(mMaxBackoffMillis, mBackoffMillis << Math.min(retry - 1, 30));
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) (RANDOM.nextDouble() * cap));
+        try {
+            for (long left; (left = end - System.nanoTime()) > 0; ) {
+                if (call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.min(left, TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * The circuit breaker and the recent latencies of a host.
+     */
+    private final class Host {
+
+        final String mName;
+        private final boolean[] mFailures = new boolean[mWindow];
+        private int mOutcomes;
+        private int mFailed;
+        private final long[] mLatencies = new long[LATENCIES];
+        private int mLatencyCount;
+        private long mOpenUntil;
+        private boolean mOpen;
+        private boolean mTrial;
+
+        Host(String name) {
+            mName = name;
+        }
+
+        synchronized boolean isOpen() {
+            return mOpen;
+        }
+
+        /**
+         * Whether an attempt may start; once the circuit was open long enough, lets one trial
+         * attempt through.
+         */
+        synchronized boolean allow() {
+            if (!mOpen) {
+                return true;
+            }
+            if (mTrial || System.nanoTime() - mOpenUntil < 0) {
+                return false;
+            }
+            mTrial = true;
+            return true;
+        }
+
+        /**
+         * @param success null for a cancelled attempt
+         */
+        synchronized void finished(Boolean success, long latencyNanos) {
+            if (success != null && success) {
+                mLatencies[mLatencyCount++ % LATENCIES] = latencyNanos;
+            }
+            if (mOpen) {
+                if (mTrial && success != null) {
+                    if (success) {
+                        mOpen = false;
+                        mOutcomes = mFailed = 0;
+                    } else {
+                        mOpenUntil = System.nanoTime() + mOpenNanos;
+                    }
+                }
+                mTrial = false;
+                return;
+            }
+            if (success == null) {
+                return;
+            }
+            int slot = mOutcomes++ % mWindow;
+            if (mOutcomes > mWindow && mFailures[slot]) {
+                mFailed--;
+            }
+            mFailures[slot] = !success;
+            if (!success) {
+                mFailed++;
+            }
+            if (mOutcomes >= mWindow && mFailed >= mFailureRatio * mWindow) {
+                mOpen = true;
+                mOpenUntil = System.nanoTime() + mOpenNanos;
+            }
+        }
+
+        /**
+         * @return -1 until enough latencies are known
+         */
+        synchronized long hedgeDelayNanos() {
+            if (mHedgePercentile <= 0 || mLatencyCount < LATENCIES / 4) {
+                return -1;
+            }
+            long[] latencies = Arrays.copyOf(mLatencies, Math.min(mLatencyCount, LATENCIES));
+            Arrays.sort(latencies);
+            int index = (int) Math.ceil(latencies.length * mHedgePercentile / 100) - 1;
+            return Math.max(mMinHedgeDelayNanos, latencies[Math.max(0, Math.min(index, latencies.length - 1))]);
+        }
+    }
+
+    /**
+     * One attempt of a request, hedged when slow, waited for by the thread of the call. The attempt
+     * and the hedge are clones of the call.
+     */
+    private final class Race {
+
+        private final Call mCall;
+        private final Host mHost;
+        private final List<Call> mCalls = new ArrayList<>(2);
+        private int mPending;
+        private Call mWinner;
+        private Response mResponse;
+        private IOException mFailure;
+        private boolean mDone;
+
+        Race(Call call, Host host) {
+            mCall = call;
+            mHost = host;
+        }
+
+        synchronized Response run() throws IOException {
+            long start = System.nanoTime();
+            long hedgeDelay = mHost.hedgeDelayNanos();
+            boolean hedged = hedgeDelay < 0;
+            start();
+            try {
+                while (mResponse == null && mPending > 0) {
+                    if (mCall.isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                    long wait = TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+                    if (!hedged) {
+                        long left = start + hedgeDelay - System.nanoTime();
+                        if (left <= 0) {
+                            hedged = true;
+                            if (mHost.allow()) {
+                                mHedges.incrementAndGet();
+                                start();
+                            }
+                            continue;
+                        }
+                        wait = Math.min(wait, left);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                mDone = true;
+                for (Call attempt : mCalls) {
+                    if (attempt != mWinner) {
+                        attempt.cancel();
+                    }
+                }
+            }
+            if (mResponse == null) {
+                throw mFailure != null ? mFailure : new IOException("Canceled");
+            }
+            return mResponse;
+        }
+
+        /**
+         * The response of the winning attempt, as the response of the call. OkHttp signals neither
+         * the end nor the failure of the call, whose network is the attempt's, so its body records
+         * them in the metrics and cancels the attempt once the call was cancelled.
+         */
+        Response forward(Response response, final long start) {
+            final Call winner;
+            synchronized (this) {
+                winner = mWinner;
+            }
+            ResponseBody body = response.body();
+            Source source = new ForwardingSource(body.source()) {
+
+                private boolean mFinished;
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    if (mCall.isCanceled()) {
+                        winner.cancel();
+                    }
+                    long read;
+                    try {
+                        read = super.read(sink, byteCount);
+                    } catch (IOException e) {
+                        finished(true);
+                        throw e;
+                    }
+                    if (read == -1) {
+                        finished(false);
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    finished(false);
+                    super.close();
+                }
+
+                private void finished(boolean failed) {
+                    NetworkMetrics metrics = mMetrics;
+                    if (!mFinished && metrics != null) {
+                        metrics.recordCall(start, failed);
+                    }
+                    mFinished = true;
+                }
+            };
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)))
+                    .build();
+        }
+
+        private void start() {
+            final Call attempt = mCall.clone();
+            final long start = System.nanoTime();
+            mCalls.add(attempt);
+            mPending++;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Response response;
+                    ATTEMPTS.add(attempt);
+                    try {
+                        response = attempt.execute();
+                    } catch (IOException e) {
+                        onFailure(attempt, e);
+                        return;
+                    } finally {
+                        ATTEMPTS.remove(attempt);
+                    }
+                    onResponse(attempt, response, System.nanoTime() - start);
+                }
+            });
+        }
+
+        private void onFailure(Call attempt, IOException e) {
+            mHost.finished(attempt.isCanceled() ? null : false, 0);
+            synchronized (this) {
+                mPending--;
+                if (mFailure == null) {
+                    mFailure = e;
+                }
+                notifyAll();
+            }
+        }
+
+        private void onResponse(Call attempt, Response response, long latencyNanos) {
+            mHost.finished(response.code() < 500, latencyNanos);
+            synchronized (this) {
+                mPending--;
+                if (mResponse == null && !mDone) {
+                    mWinner = attempt;
+                    mResponse = response;
+                    notifyAll();
+                    return;
+                }
+            }
+            response.close();
+        }
+    }
+
+}
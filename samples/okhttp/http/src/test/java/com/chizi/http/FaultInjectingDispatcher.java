@@ -0,0 +1,53 @@
+package com.chizi.http;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Answers every request of a MockWebServer with the same body, after injecting faults at random:
+ * a share of the requests fail, half with a 503 and half with the connection dropped once the
+ * request is read, and a share of the others are answered late.
+ */
+final class FaultInjectingDispatcher extends Dispatcher {
+
+    private final Random mRandom;
+    private final String mBody;
+    private volatile double mFailureRate;
+    private volatile double mSlowRate;
+    private volatile long mSlowMillis;
+
+    FaultInjectingDispatcher(long seed, String body) {
+        mRandom = new Random(seed);
+        mBody = body;
+    }
+
+    void setFaults(double failureRate, double slowRate, long slowMillis) {
+        mFailureRate = failureRate;
+        mSlowRate = slowRate;
+        mSlowMillis = slowMillis;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        double draw;
+        boolean half;
+        synchronized (mRandom) {
+            draw = mRandom.nextDouble();
+            half = mRandom.nextBoolean();
+        }
+        if (draw < mFailureRate) {
+            return half ? new MockResponse().setResponseCode(503)
+                    : new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+        MockResponse response = new MockResponse().setBody(mBody);
+        if (draw < mFailureRate + mSlowRate) {
+            response.setHeadersDelay(mSlowMillis, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+}
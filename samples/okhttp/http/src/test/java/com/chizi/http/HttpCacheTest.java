@@ -0,0 +1,141 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpCacheTest {
+
+    private static final String REPOS = "[{\"id\":160470879,\"name\":\"ChiziDeRepo\"}]";
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final MockWebServer mServer = new MockWebServer();
+    private OkHttpClient mClient;
+    private HttpCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.start();
+        mClient = HttpClients.newClient(new HttpClients.Config.Builder()
+                .cache(mFolder.newFolder("http"), 1024 * 1024, TimeUnit.DAYS.toMillis(1))
+                .build());
+        mCache = HttpCache.of(mClient);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void servesFreshResponsesFromDisk() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS).setHeader("Cache-Control", "max-age=60"));
+
+        assertEquals(REPOS, get());
+        assertEquals(REPOS, get());
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(1, mCache.missCount());
+        assertEquals(1, mCache.hitCount());
+    }
+
+    @Test
+    public void revalidatesStaleResponsesWithEtag() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS)
+                .setHeader("Cache-Control", "max-age=0")
+                .setHeader("ETag", "\"v1\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals(REPOS, get());
+        assertEquals(REPOS, get());
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        RecordedRequest conditional = mServer.takeRequest();
+        assertEquals("\"v1\"", conditional.getHeader("If-None-Match"));
+        assertEquals(1, mCache.revalidationCount());
+    }
+
+    @Test
+    public void servesStaleResponsesOffline() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS).setHeader("Cache-Control", "max-age=0"));
+        assertEquals(REPOS, get());
+
+        mCache.setOffline(true);
+        assertEquals(REPOS, get());
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(1, mCache.staleHitCount());
+    }
+
+    @Test
+    public void fallsBackToStaleResponsesWhenTheNetworkFails() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS).setHeader("Cache-Control", "max-age=0"));
+        assertEquals(REPOS, get());
+
+        mServer.shutdown();
+        assertEquals(REPOS, get());
+        assertEquals(1, mCache.staleHitCount());
+    }
+
+    @Test
+    public void reportsTheNetworkFailureWhenTheStaleFallbackFails() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        OkHttpClient client = mClient.newBuilder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        throw new IOException(attempts.incrementAndGet() == 1 ? "network" : "stale");
+                    }
+                })
+                .build();
+
+        try {
+            client.newCall(request()).execute();
+            fail();
+        } catch (IOException e) {
+            assertEquals("network", e.getMessage());
+            assertEquals("stale", e.getCause().getMessage());
+        }
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void failsOfflineWithoutCachedResponse() throws Exception {
+        mCache.setOffline(true);
+        try (Response response = mClient.newCall(request()).execute()) {
+            assertEquals(504, response.code());
+        }
+        assertEquals(0, mServer.getRequestCount());
+        assertEquals(1, mCache.missCount());
+        assertTrue(mCache.size() <= mCache.maxSize());
+    }
+
+    private String get() throws IOException {
+        try (Response response = mClient.newCall(request()).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private Request request() {
+        return new Request.Builder().url(mServer.url("/users/chizidegit/repos")).build();
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NetworkMetricsTest {
+
+    private static final String REPOS = "[{\"id\":160470879,\"name\":\"ChiziDeRepo\"}]";
+
+    private final MockWebServer mServer = new MockWebServer();
+    private OkHttpClient mClient;
+    private NetworkMetrics mMetrics;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.start();
+        mClient = HttpClients.newClient(new HttpClients.Config.Builder()
+                .metrics(new NetworkMetrics())
+                .build());
+        mMetrics = NetworkMetrics.of(mClient);
+        assertNotNull(mMetrics);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void recordsPhasesAndBytes() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        get(mClient);
+        Response response = mClient.newCall(new Request.Builder()
+                .url(mServer.url("/users/ChiziDe/repos"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), "hello"))
+                .build()).execute();
+        response.body().string();
+
+        NetworkMetrics.Snapshot snapshot = mMetrics.snapshot();
+        assertEquals(2, snapshot.count(NetworkMetrics.Phase.CALL));
+        assertEquals(1, snapshot.count(NetworkMetrics.Phase.CONNECT));
+        assertEquals(0, snapshot.count(NetworkMetrics.Phase.TLS));
+        assertEquals(2, snapshot.count(NetworkMetrics.Phase.TIME_TO_FIRST_BYTE));
+        assertEquals(2, snapshot.count(NetworkMetrics.Phase.RESPONSE_BODY));
+        assertEquals(5, snapshot.requestBytes());
+        assertEquals(2 * REPOS.length(), snapshot.responseBytes());
+        assertTrue(snapshot.percentileMicros(NetworkMetrics.Phase.CALL, 50)
+                <= snapshot.percentileMicros(NetworkMetrics.Phase.CALL, 100));
+    }
+
+    @Test
+    public void timesFirstByteUntilTheHeadersArrive() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        get(mClient);
+
+        NetworkMetrics.Snapshot snapshot = mMetrics.snapshot();
+        assertEquals(1, snapshot.count(NetworkMetrics.Phase.TIME_TO_FIRST_BYTE));
+        assertTrue(snapshot.meanMicros(NetworkMetrics.Phase.TIME_TO_FIRST_BYTE) >= 200000);
+        assertTrue(snapshot.meanMicros(NetworkMetrics.Phase.RESPONSE_BODY) < 200000);
+    }
+
+    @Test
+    public void recordsCallsAnsweredByResilienceAttempts() throws Exception {
+        OkHttpClient client = HttpClients.newClient(new HttpClients.Config.Builder()
+                .metrics(new NetworkMetrics())
+                .resilience(new Resilience.Builder().retries(2, 10, 100).build())
+                .build());
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        for (int i = 0; i < 3; i++) {
+            get(client);
+        }
+
+        NetworkMetrics.Snapshot snapshot = NetworkMetrics.of(client).snapshot();
+        assertEquals(3, snapshot.count(NetworkMetrics.Phase.CALL));
+        assertEquals(4, snapshot.count(NetworkMetrics.Phase.TIME_TO_FIRST_BYTE));
+        assertEquals(0, snapshot.failedCalls());
+    }
+
+    @Test
+    public void tracksConnectionReusePerHost() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setBody(REPOS));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            get(mClient);
+        }
+
+        NetworkMetrics.Snapshot snapshot = mMetrics.snapshot();
+        String host = mServer.url("/").host();
+        assertEquals(4, snapshot.connectionsAcquired(host));
+        assertEquals(1, snapshot.connectionsOpened(host));
+        assertEquals(0.75, snapshot.reuseRate(host), 0);
+    }
+
+    @Test
+    public void recordsTlsHandshakes() throws Exception {
+        String host = InetAddress.getByName("localhost").getCanonicalHostName();
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName(host)
+                .build();
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+        HandshakeCertificates clientCertificates = new HandshakeCertificates.Builder()
+                .addTrustedCertificate(certificate.certificate())
+                .build();
+        mServer.useHttps(serverCertificates.sslSocketFactory(), false);
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        get(mClient.newBuilder()
+                .sslSocketFactory(clientCertificates.sslSocketFactory(), clientCertificates.trustManager())
+                .build());
+
+        NetworkMetrics.Snapshot snapshot = mMetrics.snapshot();
+        assertEquals(1, snapshot.count(NetworkMetrics.Phase.TLS));
+        assertEquals(1, snapshot.count(NetworkMetrics.Phase.CONNECT));
+    }
+
+    @Test
+    public void countsFailedCalls() throws Exception {
+        mServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        try {
+            get(mClient.newBuilder().retryOnConnectionFailure(false).build());
+            fail();
+        } catch (IOException expected) {
+        }
+
+        NetworkMetrics.Snapshot snapshot = mMetrics.snapshot();
+        assertEquals(1, snapshot.failedCalls());
+        assertEquals(1, snapshot.count(NetworkMetrics.Phase.CALL));
+    }
+
+    @Test
+    public void exportsJson() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        get(mClient);
+
+        String json = mMetrics.snapshot().toJson();
+        assertTrue(json, json.startsWith("{\"phases\":{\"call\":{\"count\":1,"));
+        assertTrue(json, json.contains("\"responseBytes\":" + REPOS.length()));
+        assertTrue(json, json.contains("\"" + mServer.url("/").host() + "\":{\"acquired\":1,\"opened\":1,\"reuseRate\":0.000}"));
+    }
+
+    private void get(OkHttpClient client) throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(mServer.url("/users/ChiziDe/repos"))
+                .build()).execute();
+        try {
+            assertEquals(REPOS, response.body().string());
+        } finally {
+            response.close();
+        }
+    }
+}
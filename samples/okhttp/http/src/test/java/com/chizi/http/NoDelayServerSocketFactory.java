@@ -0,0 +1,52 @@
+package com.chizi.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import javax.net.ServerSocketFactory;
+
+/**
+ * Accepts connections with {@code TCP_NODELAY} for MockWebServer, which writes the headers and the
+ * body of a response separately. Delayed by Nagle's algorithm until the client acknowledges the
+ * headers, which it delays too, the body of every response on a reused connection would come 40 ms
+ * late.
+ */
+final class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+        return new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = super.accept();
+                socket.setTcpNoDelay(true);
+                return socket;
+            }
+        };
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return createServerSocket(port, 50, null);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+        return createServerSocket(port, backlog, null);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+        ServerSocket serverSocket = createServerSocket();
+        try {
+            serverSocket.bind(new InetSocketAddress(address, port), backlog);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        return serverSocket;
+    }
+}
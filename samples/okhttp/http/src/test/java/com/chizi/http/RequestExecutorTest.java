@@ -0,0 +1,138 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestExecutorTest {
+
+    private static final RequestExecutor.Reader<String> STRING = new RequestExecutor.Reader<String>() {
+        @Override
+        public String read(ResponseBody body) throws IOException {
+            return body.string();
+        }
+    };
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private RequestExecutor mExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                mRelease.await(5, TimeUnit.SECONDS);
+                String path = request.getPath();
+                return path.equals("/missing") ? new MockResponse().setResponseCode(404)
+                        : new MockResponse().setBody(path);
+            }
+        });
+        mServer.start();
+        mExecutor = new RequestExecutor(new OkHttpClient());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mRelease.countDown();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void joinsIdenticalRequestsInFlight() throws Exception {
+        Results results = new Results(10);
+        for (int i = 0; i < 10; i++) {
+            mExecutor.enqueue(null, request("/users/chizidegit/repos"), STRING, results);
+        }
+        mRelease.countDown();
+        results.await();
+        assertEquals(Collections.nCopies(10, "/users/chizidegit/repos"), results.mResults);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void supersedesPreviousRequestOfTheTag() throws Exception {
+        Results first = new Results(1);
+        Results second = new Results(1);
+        RequestExecutor.Subscription superseded = mExecutor.enqueue("repos", request("/users/a/repos"), STRING, first);
+        mExecutor.enqueue("repos", request("/users/b/repos"), STRING, second);
+        assertTrue(superseded.isCancelled());
+        mRelease.countDown();
+        second.await();
+        assertEquals(Collections.singletonList("/users/b/repos"), second.mResults);
+        assertFalse(first.mDone.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void keepsSharedCallWhenOneSubscriberCancels() throws Exception {
+        Results kept = new Results(1);
+        Results dropped = new Results(1);
+        mExecutor.enqueue(null, request("/users/chizidegit/repos"), STRING, kept);
+        mExecutor.enqueue(null, request("/users/chizidegit/repos"), STRING, dropped).cancel();
+        mRelease.countDown();
+        kept.await();
+        assertEquals(Collections.singletonList("/users/chizidegit/repos"), kept.mResults);
+        assertFalse(dropped.mDone.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void reportsUnsuccessfulStatus() throws Exception {
+        Results results = new Results(1);
+        mExecutor.enqueue(null, request("/missing"), STRING, results);
+        mRelease.countDown();
+        results.await();
+        assertEquals(1, results.mFailures.size());
+        assertTrue(results.mFailures.get(0).getMessage().startsWith("HTTP 404"));
+    }
+
+    private Request request(String path) {
+        return new Request.Builder().url(mServer.url(path)).build();
+    }
+
+    private static final class Results implements RequestExecutor.Callback<String> {
+
+        final List<String> mResults = Collections.synchronizedList(new ArrayList<String>());
+        final List<IOException> mFailures = Collections.synchronizedList(new ArrayList<IOException>());
+        final CountDownLatch mDone;
+
+        Results(int count) {
+            mDone = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onSuccess(String result) {
+            mResults.add(result);
+            mDone.countDown();
+        }
+
+        @Override
+        public void onFailure(IOException e) {
+            mFailures.add(e);
+            mDone.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+}
@@ -0,0 +1,295 @@
+package com.chizi.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResilienceTest {
+
+    private static final String REPOS = "[{\"id\":160470879,\"name\":\"ChiziDeRepo\"}]";
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final MockWebServer mServer = new MockWebServer();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.setServerSocketFactory(new NoDelayServerSocketFactory());
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void retriesIdempotentRequests() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder().retries(3, 10, 100));
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setResponseCode(502));
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        assertEquals(REPOS, get(client));
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(2, Resilience.of(client).retryCount());
+    }
+
+    @Test
+    public void attemptsRunOnTheClientOfTheCall() throws Exception {
+        OkHttpClient derived = newClient(new Resilience.Builder().retries(2, 10, 100)).newBuilder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        return chain.proceed(chain.request().newBuilder().header("X-Derived", "yes").build());
+                    }
+                })
+                .build();
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        assertEquals(REPOS, get(derived));
+        assertEquals("yes", mServer.takeRequest().getHeader("X-Derived"));
+        assertEquals("yes", mServer.takeRequest().getHeader("X-Derived"));
+    }
+
+    @Test
+    public void returnsLastFailedResponseOnceAttemptsAreSpent() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder().retries(2, 10, 100));
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+
+        try (Response response = call(client, new Request.Builder().url(mServer.url("/")).build())) {
+            assertEquals(503, response.code());
+        }
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void doesNotRetryPosts() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder().retries(3, 10, 100));
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+
+        try (Response response = call(client, new Request.Builder()
+                .url(mServer.url("/"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), "hello"))
+                .build())) {
+            assertEquals(503, response.code());
+        }
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(0, Resilience.of(client).retryCount());
+    }
+
+    @Test
+    public void hedgesRequestsSlowerThanThePercentile() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder().hedging(95, 100));
+        final AtomicInteger requests = new AtomicInteger();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = new MockResponse().setBody(REPOS);
+                return requests.getAndIncrement() == 20 ? response.setHeadersDelay(3, TimeUnit.SECONDS) : response;
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            get(client);
+        }
+
+        long start = System.nanoTime();
+        assertEquals(REPOS, get(client));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(millis + " ms", millis >= 100 && millis < 2000);
+        assertEquals(1, Resilience.of(client).hedgeCount());
+        assertEquals(22, mServer.getRequestCount());
+    }
+
+    @Test
+    public void cancellingTheCallCancelsTheWinningAttempt() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder());
+        mServer.enqueue(new MockResponse()
+                .setBody(new Buffer().write(new byte[64 * 1024]))
+                .throttleBody(1024, 50, TimeUnit.MILLISECONDS));
+        Call call = client.newCall(new Request.Builder().url(mServer.url("/")).build());
+
+        try (Response response = call.execute()) {
+            BufferedSource body = response.body().source();
+            body.require(1024);
+            call.cancel();
+            long start = System.nanoTime();
+            try {
+                body.readByteString();
+                fail();
+            } catch (IOException expected) {
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        }
+    }
+
+    @Test
+    public void opensTheCircuitWhenErrorsClimb() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder()
+                .retries(1, 0, 0)
+                .circuitBreaker(4, 0.5, TimeUnit.HOURS.toMillis(1)));
+        Resilience resilience = Resilience.of(client);
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(500));
+        }
+        for (int i = 0; i < 4; i++) {
+            call(client, new Request.Builder().url(mServer.url("/")).build()).close();
+        }
+
+        assertTrue(resilience.isOpen(mServer.url("/").host()));
+        try {
+            get(client);
+            fail();
+        } catch (Resilience.CircuitOpenException expected) {
+        }
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(1, resilience.rejectionCount());
+    }
+
+    @Test
+    public void closesTheCircuitAfterASuccessfulTrial() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder()
+                .retries(1, 0, 0)
+                .circuitBreaker(4, 0.5, 100));
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(500));
+        }
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+        for (int i = 0; i < 4; i++) {
+            call(client, new Request.Builder().url(mServer.url("/")).build()).close();
+        }
+        assertTrue(Resilience.of(client).isOpen(mServer.url("/").host()));
+
+        Thread.sleep(150);
+
+        assertEquals(REPOS, get(client));
+        assertFalse(Resilience.of(client).isOpen(mServer.url("/").host()));
+    }
+
+    @Test
+    public void servesStaleResponsesWhileTheCircuitIsOpen() throws Exception {
+        OkHttpClient client = HttpClients.newClient(new HttpClients.Config.Builder()
+                .cache(mFolder.newFolder("http"), 1024 * 1024, TimeUnit.DAYS.toMillis(1))
+                .resilience(new Resilience.Builder()
+                        .retries(1, 0, 0)
+                        .circuitBreaker(2, 1, TimeUnit.HOURS.toMillis(1))
+                        .build())
+                .build());
+        mServer.enqueue(new MockResponse().setBody(REPOS).setHeader("Cache-Control", "max-age=0"));
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        assertEquals(REPOS, get(client));
+        call(client, new Request.Builder().url(mServer.url("/")).build()).close();
+        call(client, new Request.Builder().url(mServer.url("/")).build()).close();
+
+        assertEquals(REPOS, get(client));
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(1, Resilience.of(client).rejectionCount());
+        assertEquals(1, HttpCache.of(client).staleHitCount());
+    }
+
+    @Test
+    public void survivesInjectedFaults() throws Exception {
+        OkHttpClient client = newClient(new Resilience.Builder()
+                .retries(5, 10, 100)
+                .hedging(95, 50));
+        FaultInjectingDispatcher faults = new FaultInjectingDispatcher(0x5eed, REPOS);
+        faults.setFaults(0.2, 0.05, 2000);
+        mServer.setDispatcher(faults);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(REPOS, get(client));
+        }
+        assertTrue(Resilience.of(client).retryCount() > 0);
+    }
+
+    @Test
+    public void boundsTheAttemptThreads() throws Exception {
+        final OkHttpClient client = HttpClients.newClient(new HttpClients.Config.Builder()
+                .maxRequests(1)
+                .resilience(new Resilience.Builder().build())
+                .build());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int running = inFlight.incrementAndGet();
+                maxInFlight.set(Math.max(maxInFlight.get(), running));
+                Thread.sleep(100);
+                inFlight.decrementAndGet();
+                return new MockResponse().setBody(REPOS);
+            }
+        });
+        final AtomicInteger succeeded = new AtomicInteger();
+        Thread[] callers = new Thread[6];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        if (REPOS.equals(get(client))) {
+                            succeeded.incrementAndGet();
+                        }
+                    } catch (IOException ignored) {
+                    }
+                }
+            };
+            callers[i].start();
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        assertEquals(callers.length, succeeded.get());
+        assertTrue(maxInFlight.get() + " attempts at once", maxInFlight.get() <= 2);
+    }
+
+    private OkHttpClient newClient(Resilience.Builder resilience) {
+        return HttpClients.newClient(new HttpClients.Config.Builder()
+                .resilience(resilience.build())
+                .build());
+    }
+
+    private Response call(OkHttpClient client, Request request) throws IOException {
+        return client.newCall(request).execute();
+    }
+
+    private String get(OkHttpClient client) throws IOException {
+        try (Response response = call(client, new Request.Builder()
+                .url(mServer.url("/users/ChiziDe/repos"))
+                .build())) {
+            assertEquals(200, response.code());
+            return response.body().string();
+        }
+    }
+}
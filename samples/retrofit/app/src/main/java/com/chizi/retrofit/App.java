@@ -0,0 +1,31 @@
+package com.chizi.retrofit;
+
+import android.app.Application;
+
+import com.chizi.annotation.Binder;
+import com.chizi.http.HttpClients;
+import com.chizi.http.NetworkMetrics;
+import com.chizi.http.Resilience;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+public class App extends Application {
+
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Generated from the diRegistry processor option, covers every @DIActivity of the app.
+        Binder.install(new DIRegistry());
+        // Responses are cached on disk, revalidated when stale and served up to a day stale offline.
+        // NetworkMetrics.of(HttpClients.get()).snapshot() tells where the time of the calls goes.
+        // GETs are retried, hedged when slow, and fail fast while their host keeps failing.
+        HttpClients.install(new HttpClients.Config.Builder()
+                .cache(new File(getCacheDir(), "http"), HTTP_CACHE_SIZE, TimeUnit.DAYS.toMillis(1))
+                .metrics(new NetworkMetrics())
+                .resilience(new Resilience.Builder().build())
+                .build());
+    }
+}
@@ -2,9 +2,12 @@ package com.chizi.retrofit;
 
 import java.util.List;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Path;
+import retrofit2.http.Streaming;
+import retrofit2.http.Url;
 
 /**
  * Created by Chenll on 2018/12/6.
@@ -15,4 +18,17 @@ public interface GithubApi {
     @GET("users/{user}/repos")
     Call<List<RepoBean>> getRepos(@Path("user") String user);
 
+    /**
+     * The unbuffered body of {@link #getRepos}, for reading it while it arrives.
+     */
+    @Streaming
+    @GET("users/{user}/repos")
+    Call<ResponseBody> getReposBody(@Path("user") String user);
+
+    /**
+     * A following page of {@link #getRepos}, from the URL given by its {@code Link} header.
+     */
+    @GET
+    Call<List<RepoBean>> getReposPage(@Url String url);
+
 }
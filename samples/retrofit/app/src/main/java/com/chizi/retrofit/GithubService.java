@@ -1,9 +1,23 @@
 package com.chizi.retrofit;
 
+import com.chizi.http.HttpClients;
+import com.chizi.http.RequestExecutor;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
+import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
@@ -13,20 +27,62 @@ import retrofit2.converter.gson.GsonConverterFactory;
 
 public class GithubService {
 
+    /**
+     * Parses the @JsonModel classes with their generated adapters instead of reflection.
+     */
+    static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(new JsonAdapters())
+            .create();
+
+    /**
+     * Runs the callbacks of enqueued calls on the OkHttp thread that got the response, rather than
+     * on the main thread, as the pages of a {@link RepoPager} are waited for off the main thread.
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
     private Retrofit mRetrofit;
     private GithubApi mGithubApi;
+    private RequestExecutor mExecutor;
+
+    private static volatile GithubService sInstance;
 
-    public static GithubService newInstance() {
+    /**
+     * The service of the process, whose Retrofit keeps the parsed {@link GithubApi} methods and
+     * whose calls go through the shared {@link HttpClients#get() client}.
+     */
+    public static GithubService getInstance() {
+        GithubService service = sInstance;
+        if (service == null) {
+            synchronized (GithubService.class) {
+                service = sInstance;
+                if (service == null) {
+                    service = sInstance = newInstance("https://api.github.com/");
+                }
+            }
+        }
+        return service;
+    }
+
+    static GithubService newInstance(String baseUrl) {
+        OkHttpClient client = HttpClients.get();
         Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl("https://api.github.com/")
-                .addConverterFactory(GsonConverterFactory.create())
+                .baseUrl(baseUrl)
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create(GSON))
+                .callbackExecutor(DIRECT)
                 .build();
-        return new GithubService(retrofit);
+        return new GithubService(retrofit, client);
     }
 
-    private GithubService(Retrofit retrofit) {
+    private GithubService(Retrofit retrofit, OkHttpClient client) {
         mRetrofit = retrofit;
         mGithubApi = mRetrofit.create(GithubApi.class);
+        mExecutor = new RequestExecutor(client);
     }
 
     public List<RepoBean> getRepos(String user) throws IOException {
@@ -34,4 +90,58 @@ public class GithubService {
         return reposCall.execute().body();
     }
 
+    /**
+     * Streams the repos of the user while they arrive instead of building the whole list. With
+     * {@code fields}, only these JSON names are read and the other values are skipped.
+     */
+    public RepoReader streamRepos(String user, String... fields) throws IOException {
+        Response<ResponseBody> response = mGithubApi.getReposBody(user).execute();
+        if (!response.isSuccessful()) {
+            response.errorBody().close();
+            throw new IOException("HTTP " + response.code() + " " + response.message());
+        }
+        return new RepoReader(response.body(), getAdapter(new HashSet<>(Arrays.asList(fields))));
+    }
+
+    /**
+     * Gets the names of the repos of the user without blocking, on the shared dispatcher, as
+     * {@code [name, ...]}. The repos are streamed as {@link #streamRepos} does and only their names
+     * are read and kept. A call for the names already in flight is joined, and any other one still
+     * in flight is superseded. The callback runs on an OkHttp thread.
+     */
+    public RequestExecutor.Subscription getRepoNames(String user, RequestExecutor.Callback<CharSequence> callback) {
+        return mExecutor.enqueue("getRepoNames", mGithubApi.getReposBody(user).request(), REPO_NAMES, callback);
+    }
+
+    /**
+     * Reads the repos of the user from every page of the list, with up to {@code prefetch} pages
+     * requested ahead of the one being read.
+     */
+    public RepoPager pageRepos(String user, int prefetch) {
+        return new RepoPager(mGithubApi, mGithubApi.getRepos(user), prefetch);
+    }
+
+    private static TypeAdapter<RepoBean> getAdapter(Set<String> fields) {
+        return fields.isEmpty() ? GSON.getAdapter(RepoBean.class) : new RepoBeanJsonAdapter(GSON, fields);
+    }
+
+    private static final RequestExecutor.Reader<CharSequence> REPO_NAMES = new RequestExecutor.Reader<CharSequence>() {
+        @Override
+        public CharSequence read(ResponseBody body) throws IOException {
+            RepoReader reader = new RepoReader(body, getAdapter(Collections.singleton("name")));
+            StringBuilder names = new StringBuilder("[");
+            try {
+                while (reader.hasNext()) {
+                    if (names.length() > 1) {
+                        names.append(", ");
+                    }
+                    names.append(reader.next().getName());
+                }
+            } finally {
+                reader.close();
+            }
+            return names.append(']');
+        }
+    };
+
 }
@@ -2,67 +2,63 @@ package com.chizi.retrofit;
 
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
-import android.util.Log;
-import android.view.View;
-import android.widget.Button;
 import android.widget.TextView;
 
+import com.chizi.annotation.Binder;
+import com.chizi.annotation.DIActivity;
+import com.chizi.annotation.DIView;
+import com.chizi.annotation.OnClick;
+import com.chizi.http.RequestExecutor;
+
 import java.io.IOException;
-import java.util.List;
 
+@DIActivity
 public class MainActivity extends AppCompatActivity {
 
-    private static final String TAG = "MainActivity";
+    @DIView(R.id.tvContent)
+    TextView mContentTextView;
 
-    private Button mTestButton;
-    private TextView mContentTextView;
+    private RequestExecutor.Subscription mRepos;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        initViews();
-        initListeners();
+        Binder.bind(this);
     }
 
-    private void initViews() {
-        mTestButton = findViewById(R.id.btnTest);
-        mContentTextView = findViewById(R.id.tvContent);
+    @Override
+    protected void onDestroy() {
+        if (mRepos != null) {
+            mRepos.cancel();
+        }
+        Binder.unbind(this);
+        super.onDestroy();
     }
 
-    private void initListeners() {
-        mTestButton.setOnClickListener(new View.OnClickListener() {
+    @OnClick(R.id.btnTest)
+    void getRepos() {
+        // Only the names are shown, so the other fields are skipped while streaming. Taps while
+        // loading join the request in flight rather than starting a thread each.
+        mRepos = GithubService.getInstance().getRepoNames("chizidegit", new RequestExecutor.Callback<CharSequence>() {
             @Override
-            public void onClick(View v) {
-                getRepos();
+            public void onSuccess(CharSequence result) {
+                setResultData(result);
             }
-        });
-    }
 
-    private void getRepos() {
-        new Thread(new Runnable() {
             @Override
-            public void run() {
-                try {
-                    List<RepoBean> repoList = GithubService.newInstance().getRepos("chizidegit");
-                    if (repoList == null) {
-                        Log.w(TAG, "get repos return null.");
-                        return;
-                    }
-                    setResultData(repoList);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+            public void onFailure(IOException e) {
+                e.printStackTrace();
             }
-        }).start();
+        });
     }
 
-    private void setResultData(final List<RepoBean> result) {
+    private void setResultData(final CharSequence result) {
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                mContentTextView.setText(result.toString());
+                mContentTextView.setText(result);
             }
         });
     }
@@ -1,11 +1,13 @@
 package com.chizi.retrofit;
 
+import com.chizi.annotation.JsonModel;
 import com.google.gson.annotations.SerializedName;
 
 /**
  * Created by Chenll on 2018/12/6.
  */
 
+@JsonModel
 public class RepoBean {
     /**
      * id : 160470879
@@ -0,0 +1,182 @@
+package com.chizi.retrofit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.HttpUrl;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Reads the repos of every page of a list, following its {@code Link} header. While the current
+ * page is read, up to {@code prefetch} of the following pages are already requested: all of them
+ * at once when the header tells the last page, as GitHub's does, one at a time when it only tells
+ * the next one. Close it to cancel the pages requested but not read yet.
+ */
+public final class RepoPager implements Closeable {
+
+    private static final Pattern LINK = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"([^\"]*)\"");
+
+    private final GithubApi mGithubApi;
+    private final int mPrefetch;
+    private final ArrayDeque<Page> mPages = new ArrayDeque<>();
+    private final ArrayDeque<String> mUrls = new ArrayDeque<>();
+    private boolean mLastKnown;
+    private Iterator<RepoBean> mRepos;
+    private boolean mClosed;
+
+    RepoPager(GithubApi githubApi, Call<List<RepoBean>> first, int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("prefetch < 1: " + prefetch);
+        }
+        mGithubApi = githubApi;
+        mPrefetch = prefetch;
+        mPages.add(new Page(first));
+    }
+
+    public boolean hasNext() throws IOException {
+        while (!mClosed && (mRepos == null || !mRepos.hasNext())) {
+            Page page = mPages.poll();
+            if (page == null) {
+                return false;
+            }
+            Response<List<RepoBean>> response;
+            try {
+                response = page.await();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            if (!response.isSuccessful()) {
+                close();
+                throw new IOException("HTTP " + response.code() + " " + response.message());
+            }
+            addUrls(parseLinks(response.headers().get("Link")));
+            while (mPages.size() < mPrefetch && !mUrls.isEmpty()) {
+                mPages.add(new Page(mGithubApi.getReposPage(mUrls.poll())));
+            }
+            List<RepoBean> repos = response.body();
+            mRepos = repos == null ? null : repos.iterator();
+        }
+        return !mClosed;
+    }
+
+    public RepoBean next() throws IOException {
+        if (!hasNext()) {
+            throw new IllegalStateException("no more repos");
+        }
+        return mRepos.next();
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        mUrls.clear();
+        for (Page page; (page = mPages.poll()) != null; ) {
+            page.mCall.cancel();
+        }
+    }
+
+    /**
+     * Queues the pages to come: from the next one to the last at once when both are numbered,
+     * just the next one otherwise.
+     */
+    private void addUrls(Map<String, String> links) {
+        if (mLastKnown) {
+            return;
+        }
+        String next = links.get("next");
+        if (next == null) {
+            return;
+        }
+        HttpUrl nextUrl = HttpUrl.parse(next);
+        HttpUrl lastUrl = links.containsKey("last") ? HttpUrl.parse(links.get("last")) : null;
+        Integer from = nextUrl == null ? null : parsePage(nextUrl);
+        Integer to = lastUrl == null ? null : parsePage(lastUrl);
+        if (from == null || to == null) {
+            mUrls.add(next);
+            return;
+        }
+        mLastKnown = true;
+        for (int page = from; page <= to; page++) {
+            mUrls.add(nextUrl.newBuilder().setQueryParameter("page", String.valueOf(page)).toString());
+        }
+    }
+
+    private static Integer parsePage(HttpUrl url) {
+        try {
+            return Integer.valueOf(url.queryParameter("page"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The URLs of a {@code Link} header by relation, such as {@code next} and {@code last}.
+     */
+    static Map<String, String> parseLinks(String header) {
+        Map<String, String> links = new HashMap<>();
+        if (header != null) {
+            Matcher matcher = LINK.matcher(header);
+            while (matcher.find()) {
+                links.put(matcher.group(2), matcher.group(1));
+            }
+        }
+        return links;
+    }
+
+    /**
+     * A page requested through the OkHttp dispatcher, waited for when its turn comes.
+     */
+    private static final class Page implements Callback<List<RepoBean>> {
+
+        final Call<List<RepoBean>> mCall;
+        private Response<List<RepoBean>> mResponse;
+        private Throwable mFailure;
+
+        Page(Call<List<RepoBean>> call) {
+            mCall = call;
+            call.enqueue(this);
+        }
+
+        @Override
+        public synchronized void onResponse(Call<List<RepoBean>> call, Response<List<RepoBean>> response) {
+            mResponse = response;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onFailure(Call<List<RepoBean>> call, Throwable t) {
+            mFailure = t;
+            notifyAll();
+        }
+
+        synchronized Response<List<RepoBean>> await() throws IOException {
+            while (mResponse == null && mFailure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    mCall.cancel();
+                    throw new InterruptedIOException("interrupted");
+                }
+            }
+            if (mFailure instanceof IOException) {
+                throw (IOException) mFailure;
+            }
+            if (mFailure != null) {
+                throw new IOException(mFailure);
+            }
+            return mResponse;
+        }
+    }
+
+}
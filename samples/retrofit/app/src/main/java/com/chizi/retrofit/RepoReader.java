@@ -0,0 +1,60 @@
+package com.chizi.retrofit;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import okhttp3.ResponseBody;
+
+/**
+ * Reads a repo list one {@link RepoBean} at a time while the body arrives, so that only the
+ * current repo is held however long the list is. Closes the body once the list is read; close it
+ * yourself when stopping earlier.
+ */
+public final class RepoReader implements Closeable {
+
+    private final JsonReader mReader;
+    private final TypeAdapter<RepoBean> mAdapter;
+    private boolean mClosed;
+
+    RepoReader(ResponseBody body, TypeAdapter<RepoBean> adapter) throws IOException {
+        mReader = new JsonReader(body.charStream());
+        mAdapter = adapter;
+        try {
+            mReader.beginArray();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        if (mClosed) {
+            return false;
+        }
+        if (mReader.hasNext()) {
+            return true;
+        }
+        mReader.endArray();
+        close();
+        return false;
+    }
+
+    public RepoBean next() throws IOException {
+        if (mClosed) {
+            throw new IllegalStateException("closed");
+        }
+        return mAdapter.read(mReader);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!mClosed) {
+            mClosed = true;
+            mReader.close();
+        }
+    }
+
+}
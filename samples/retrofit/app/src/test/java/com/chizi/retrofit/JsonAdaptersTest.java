@@ -0,0 +1,145 @@
+package com.chizi.retrofit;
+
+import com.chizi.annotation.JsonModel;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that the generated adapters read and write like Gson's reflective ones.
+ */
+public class JsonAdaptersTest {
+
+    private static final Type REPO_LIST = new TypeToken<List<RepoBean>>() {
+    }.getType();
+
+    @JsonModel
+    static class Sample {
+
+        @SerializedName(value = "name", alternate = {"title", "label"})
+        String mName;
+        int count = 7;
+        Integer boxed = 8;
+        long big;
+        boolean flag;
+        float ratio;
+        Float boxedRatio;
+        double score;
+        List<String> tags;
+        Child child;
+    }
+
+    static class Child {
+
+        String value;
+    }
+
+    private final Gson mReflective = new Gson();
+    private final Gson mGenerated = new GsonBuilder()
+            .registerTypeAdapterFactory(new TypeAdapterFactory() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                    return type.getRawType() == Sample.class
+                            ? (TypeAdapter<T>) new JsonAdaptersTest_SampleJsonAdapter(gson) : null;
+                }
+            })
+            .create();
+
+    @Test
+    public void readsLikeGson() {
+        String json = "{\"name\":\"a\",\"count\":3,\"boxed\":4,\"big\":12345678901,\"flag\":true,"
+                + "\"ratio\":0.1,\"boxedRatio\":2.5,\"score\":1.25,\"tags\":[\"x\",\"y\"],"
+                + "\"child\":{\"value\":\"c\"},\"unknown\":{\"nested\":[1,2]}}";
+
+        assertSameAsGson(json);
+        Sample sample = mGenerated.fromJson(json, Sample.class);
+        assertEquals(Arrays.asList("x", "y"), sample.tags);
+        assertEquals("c", sample.child.value);
+    }
+
+    @Test
+    public void readsAlternateNames() {
+        assertEquals("b", mGenerated.fromJson("{\"title\":\"b\"}", Sample.class).mName);
+        assertEquals("c", mGenerated.fromJson("{\"label\":\"c\"}", Sample.class).mName);
+        assertSameAsGson("{\"title\":\"b\"}");
+    }
+
+    @Test
+    public void readsNullsLikeGson() {
+        String json = "{\"name\":null,\"count\":null,\"boxed\":null,\"ratio\":null,\"boxedRatio\":null,"
+                + "\"tags\":null,\"child\":null}";
+
+        Sample sample = mGenerated.fromJson(json, Sample.class);
+        assertEquals(7, sample.count);
+        assertNull(sample.boxed);
+        assertNull(sample.boxedRatio);
+        assertNull(sample.tags);
+        assertSameAsGson(json);
+        assertNull(mGenerated.fromJson("null", Sample.class));
+    }
+
+    @Test
+    public void writesLikeGson() {
+        Sample sample = new Sample();
+        sample.mName = "a";
+        sample.big = 12345678901L;
+        sample.ratio = 0.1f;
+        sample.boxedRatio = 0.3f;
+        sample.score = 0.1;
+        sample.tags = Arrays.asList("x", "y");
+        sample.child = new Child();
+        sample.child.value = "c";
+
+        assertEquals(mReflective.toJson(sample), mGenerated.toJson(sample));
+        sample.boxed = null;
+        sample.child = null;
+        assertEquals(mReflective.toJson(sample), mGenerated.toJson(sample));
+    }
+
+    @Test
+    public void readsOnlyTheProjection() throws IOException {
+        String json = "{\"name\":\"a\",\"count\":3,\"boxed\":4,\"tags\":[\"x\"],\"child\":{\"value\":\"c\"}}";
+
+        Sample sample = new JsonAdaptersTest_SampleJsonAdapter(mReflective,
+                new HashSet<>(Arrays.asList("count", "tags"))).fromJson(json);
+        assertEquals(3, sample.count);
+        assertEquals(Collections.singletonList("x"), sample.tags);
+        assertNull(sample.mName);
+        assertNull(sample.child);
+        assertEquals(Integer.valueOf(8), sample.boxed);
+    }
+
+    @Test
+    public void readsRepoListsLikeGson() {
+        String json = RepoParsingBenchmark.repos(30);
+        Gson generated = new GsonBuilder().registerTypeAdapterFactory(new JsonAdapters()).create();
+
+        List<RepoBean> repos = generated.fromJson(json, REPO_LIST);
+        List<RepoBean> expected = mReflective.fromJson(json, REPO_LIST);
+        assertEquals(30, repos.size());
+        assertEquals(mReflective.toJson(expected), mReflective.toJson(repos));
+    }
+
+    private void assertSameAsGson(String json) {
+        Sample expected = mReflective.fromJson(json, Sample.class);
+        Sample actual = mGenerated.fromJson(json, Sample.class);
+        assertEquals(mReflective.toJson(expected), mReflective.toJson(actual));
+    }
+
+}
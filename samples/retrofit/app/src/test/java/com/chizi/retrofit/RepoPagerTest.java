@@ -0,0 +1,134 @@
+package com.chizi.retrofit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RepoPagerTest {
+
+    private static final int PAGES = 8;
+    private static final int REPOS_PER_PAGE = 3;
+    private static final long PAGE_DELAY_MILLIS = 100;
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    private final AtomicInteger mMaxInFlight = new AtomicInteger();
+    private boolean mLinkLast;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                int inFlight = mInFlight.incrementAndGet();
+                try {
+                    synchronized (mMaxInFlight) {
+                        mMaxInFlight.set(Math.max(mMaxInFlight.get(), inFlight));
+                    }
+                    Thread.sleep(PAGE_DELAY_MILLIS);
+                    String page = request.getRequestUrl().queryParameter("page");
+                    return page(page == null ? 1 : Integer.parseInt(page));
+                } finally {
+                    mInFlight.decrementAndGet();
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void prefetchesNumberedPagesInParallel() throws IOException {
+        mLinkLast = true;
+        assertEquals(expectedIds(), readIds(3));
+        assertEquals(PAGES, mServer.getRequestCount());
+        assertTrue("max in flight " + mMaxInFlight.get(), mMaxInFlight.get() > 1 && mMaxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void followsNextLinksOneAtATime() throws IOException {
+        mLinkLast = false;
+        assertEquals(expectedIds(), readIds(3));
+        assertEquals(1, mMaxInFlight.get());
+    }
+
+    @Test
+    public void cancelsPrefetchedPagesOnClose() throws IOException, InterruptedException {
+        mLinkLast = true;
+        RepoPager pager = GithubService.newInstance(mServer.url("/").toString()).pageRepos("chizidegit", 2);
+        assertEquals(101, pager.next().getId());
+        pager.close();
+        assertFalse(pager.hasNext());
+        Thread.sleep(PAGE_DELAY_MILLIS * 2);
+        assertTrue("requests " + mServer.getRequestCount(), mServer.getRequestCount() <= 3);
+    }
+
+    @Test
+    public void parsesGithubLinkHeader() {
+        Map<String, String> links = RepoPager.parseLinks(
+                "<https://api.github.com/user/20386497/repos?page=2>; rel=\"next\", "
+                        + "<https://api.github.com/user/20386497/repos?page=5>; rel=\"last\"");
+        assertEquals("https://api.github.com/user/20386497/repos?page=2", links.get("next"));
+        assertEquals("https://api.github.com/user/20386497/repos?page=5", links.get("last"));
+    }
+
+    private List<Integer> readIds(int prefetch) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        RepoPager pager = GithubService.newInstance(mServer.url("/").toString()).pageRepos("chizidegit", prefetch);
+        try {
+            while (pager.hasNext()) {
+                ids.add(pager.next().getId());
+            }
+        } finally {
+            pager.close();
+        }
+        return ids;
+    }
+
+    private static List<Integer> expectedIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (int page = 1; page <= PAGES; page++) {
+            for (int i = 1; i <= REPOS_PER_PAGE; i++) {
+                ids.add(page * 100 + i);
+            }
+        }
+        return ids;
+    }
+
+    private MockResponse page(int page) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 1; i <= REPOS_PER_PAGE; i++) {
+            body.append(i > 1 ? "," : "").append("{\"id\":").append(page * 100 + i)
+                    .append(",\"name\":\"repo-").append(page).append('-').append(i).append("\"}");
+        }
+        MockResponse response = new MockResponse().setBody(body.append(']').toString());
+        if (page < PAGES) {
+            String link = "<" + mServer.url("/user/1/repos?page=" + (page + 1)) + ">; rel=\"next\"";
+            if (mLinkLast) {
+                link += ", <" + mServer.url("/user/1/repos?page=" + PAGES) + ">; rel=\"last\"";
+            }
+            response.setHeader("Link", link);
+        }
+        return response;
+    }
+
+}
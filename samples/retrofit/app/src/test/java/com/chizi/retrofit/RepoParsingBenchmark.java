@@ -0,0 +1,123 @@
+package com.chizi.retrofit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the adapters generated for the @JsonModel classes with Gson's reflective adapters on
+ * repo lists shaped like the GitHub API ones, where most fields of every repo are not mapped and
+ * only skipped. Cold measures a fresh Gson parsing a short list, as on the first request of a
+ * process; warm measures the throughput of a long list once the adapters exist. That both parse
+ * alike is checked by {@link JsonAdaptersTest}.
+ *
+ * <pre>
+ * $ ./gradlew :app:testDebugUnitTest -Pbenchmark --tests com.chizi.retrofit.RepoParsingBenchmark -i
+ * </pre>
+ */
+public class RepoParsingBenchmark {
+
+    private static final Type REPO_LIST = new TypeToken<List<RepoBean>>() {
+    }.getType();
+
+    private static final int COLD_REPOS = 30;
+    private static final int COLD_ITERATIONS = 2000;
+    private static final int WARM_REPOS = 2000;
+    private static final int WARM_WARMUP = 30;
+    private static final int WARM_ITERATIONS = 100;
+
+    @BeforeClass
+    public static void requireBenchmark() {
+        // Benchmarks take a while, so the regular test run skips them.
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void parseRepoLists() {
+        String cold = repos(COLD_REPOS);
+        String warm = repos(WARM_REPOS);
+
+        // Once for the JIT, so that cold only measures what a fresh Gson has to set up.
+        measureCold(cold, false);
+        measureCold(cold, true);
+        report("cold, " + COLD_REPOS + " repos", measureCold(cold, false), measureCold(cold, true));
+        report("warm, " + WARM_REPOS + " repos", measureWarm(warm, new Gson()), measureWarm(warm, newGenerated()));
+    }
+
+    private static Gson newGenerated() {
+        return new GsonBuilder().registerTypeAdapterFactory(new JsonAdapters()).create();
+    }
+
+    private static long measureCold(String json, boolean generated) {
+        long start = System.nanoTime();
+        for (int i = 0; i < COLD_ITERATIONS; i++) {
+            Gson gson = generated ? newGenerated() : new Gson();
+            gson.fromJson(json, REPO_LIST);
+        }
+        return (System.nanoTime() - start) / COLD_ITERATIONS;
+    }
+
+    private static long measureWarm(String json, Gson gson) {
+        for (int i = 0; i < WARM_WARMUP; i++) {
+            gson.fromJson(json, REPO_LIST);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < WARM_ITERATIONS; i++) {
+            gson.fromJson(json, REPO_LIST);
+        }
+        return (System.nanoTime() - start) / WARM_ITERATIONS;
+    }
+
+    private static void report(String name, long reflectiveNanos, long generatedNanos) {
+        System.out.println(String.format("%s: reflective %d us, generated %d us (%.2fx)", name,
+                reflectiveNanos / 1000, generatedNanos / 1000, (double) reflectiveNanos / generatedNanos));
+    }
+
+    /**
+     * A list of repos with the fields, nesting and value types of the GitHub repos API.
+     */
+    static String repos(int count) {
+        StringBuilder json = new StringBuilder(count * 1200).append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String name = "repo-" + i;
+            String url = "https://api.github.com/repos/chizidegit/" + name;
+            json.append("{\"id\":").append(160470879 + i)
+                    .append(",\"node_id\":\"MDEwOlJlcG9zaXRvcnkxNjA0NzA4Nzk=\"")
+                    .append(",\"name\":\"").append(name).append('"')
+                    .append(",\"full_name\":\"chizidegit/").append(name).append('"')
+                    .append(",\"private\":false")
+                    .append(",\"owner\":{\"login\":\"chizidegit\",\"id\":20386497")
+                    .append(",\"avatar_url\":\"https://avatars.githubusercontent.com/u/20386497?v=4\"")
+                    .append(",\"url\":\"https://api.github.com/users/chizidegit\"")
+                    .append(",\"type\":\"User\",\"site_admin\":false}")
+                    .append(",\"html_url\":\"https://github.com/chizidegit/").append(name).append('"')
+                    .append(",\"description\":").append(i % 4 == 0 ? "null" : "\"Chizi's Repo " + i + "\"")
+                    .append(",\"fork\":").append(i % 3 == 0)
+                    .append(",\"url\":\"").append(url).append('"')
+                    .append(",\"branches_url\":\"").append(url).append("/branches{/branch}\"")
+                    .append(",\"commits_url\":\"").append(url).append("/commits{/sha}\"")
+                    .append(",\"created_at\":\"2018-12-05T04:30:45Z\"")
+                    .append(",\"updated_at\":\"2018-12-06T10:12:03Z\"")
+                    .append(",\"size\":").append(i * 17)
+                    .append(",\"stargazers_count\":").append(i % 50)
+                    .append(",\"language\":\"Java\",\"has_issues\":true,\"has_wiki\":true")
+                    .append(",\"forks_count\":").append(i % 7)
+                    .append(",\"license\":{\"key\":\"apache-2.0\",\"name\":\"Apache License 2.0\"}")
+                    .append(",\"topics\":[\"android\",\"annotation-processor\",\"retrofit\"]")
+                    .append(",\"default_branch\":\"master\",\"score\":1.0}");
+        }
+        return json.append(']').toString();
+    }
+
+}
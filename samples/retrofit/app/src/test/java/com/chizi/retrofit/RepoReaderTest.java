@@ -0,0 +1,127 @@
+package com.chizi.retrofit;
+
+import com.chizi.http.HttpClients;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.ConnectionPool;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RepoReaderTest {
+
+    private static final String REPOS = "["
+            + "{\"id\":1,\"name\":\"first\",\"description\":\"one\",\"owner\":{\"login\":\"chizidegit\"}},"
+            + "{\"id\":2,\"name\":\"second\",\"description\":null,\"topics\":[\"a\",\"b\"]},"
+            + "{\"id\":3,\"name\":\"third\",\"description\":\"three\",\"score\":1.0}]";
+
+    private final MockWebServer mServer = new MockWebServer();
+    private GithubService mService;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer.start();
+        mService = GithubService.newInstance(mServer.url("/").toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void readsReposInOrder() throws Exception {
+        // chunked, as the end of the list does not end the body then, only closing it does
+        mServer.enqueue(new MockResponse().setChunkedBody(REPOS, 64));
+
+        RepoReader reader = mService.streamRepos("chizidegit");
+        List<RepoBean> repos = new ArrayList<>();
+        while (reader.hasNext()) {
+            repos.add(reader.next());
+        }
+
+        assertEquals(3, repos.size());
+        assertEquals(Arrays.asList(1, 2, 3), Arrays.asList(repos.get(0).getId(), repos.get(1).getId(),
+                repos.get(2).getId()));
+        assertEquals("second", repos.get(1).getName());
+        assertEquals("three", repos.get(2).getDescription());
+        assertEquals("/users/chizidegit/repos", mServer.takeRequest().getPath());
+        assertNoConnectionInUse();
+    }
+
+    @Test
+    public void readsOnlyTheProjectedFields() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(REPOS));
+
+        RepoReader reader = mService.streamRepos("chizidegit", "name");
+        try {
+            assertTrue(reader.hasNext());
+            RepoBean repo = reader.next();
+            assertEquals("first", repo.getName());
+            assertEquals(0, repo.getId());
+            assertNull(repo.getDescription());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void closesTheBodyWhenClosedEarly() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(RepoParsingBenchmark.repos(1000)));
+
+        RepoReader reader = mService.streamRepos("chizidegit");
+        assertTrue(reader.hasNext());
+        assertEquals("repo-0", reader.next().getName());
+        reader.close();
+
+        assertFalse(reader.hasNext());
+        assertNoConnectionInUse();
+    }
+
+    @Test
+    public void closesTheBodyOfErrorResponses() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(404).setBody("{\"message\":\"Not Found\"}"));
+
+        try {
+            mService.streamRepos("nobody");
+            fail();
+        } catch (IOException e) {
+            assertEquals("HTTP 404 Client Error", e.getMessage());
+        }
+        assertNoConnectionInUse();
+    }
+
+    @Test
+    public void closesTheBodyOfMalformedLists() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("{\"message\":\"not a list\"}"));
+
+        try {
+            mService.streamRepos("chizidegit");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertNoConnectionInUse();
+    }
+
+    /**
+     * A connection is only released to the pool, or closed, once the body using it is closed.
+     */
+    private static void assertNoConnectionInUse() {
+        ConnectionPool pool = HttpClients.get().connectionPool();
+        assertEquals(pool.connectionCount(), pool.idleConnectionCount());
+    }
+
+}